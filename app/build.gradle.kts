@@ -32,6 +32,10 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    // JVM helpers shared by the unit tests and the benchmark module
+    testFixtures {
+        enable = true
+    }
 }
 
 dependencies {
@@ -40,8 +44,8 @@ dependencies {
     implementation(libs.material)
     implementation(libs.constraintlayout)
     
-    // Gson for JSON storage
-    implementation("com.google.code.gson:gson:2.10.1")
+    // Gson for migrating the legacy JSON config
+    implementation(libs.gson)
     
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
@@ -1,9 +1,6 @@
 package com.investment.pausetime;
 
 import android.content.Intent;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.ProgressBar;
@@ -18,10 +15,11 @@ import com.google.android.material.button.MaterialButton;
 import com.investment.pausetime.adapter.AppListAdapter;
 import com.investment.pausetime.model.AppInfo;
 import com.investment.pausetime.model.MonitoredApp;
+import com.investment.pausetime.repository.AppCatalogLoader;
 import com.investment.pausetime.repository.AppRepository;
+import com.investment.pausetime.utils.IconCache;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class AppListActivity extends AppCompatActivity implements AppListAdapter.OnFilterListener {
@@ -31,25 +29,27 @@ public class AppListActivity extends AppCompatActivity implements AppListAdapter
     private SearchView searchView;
     private TextView appCountText;
     private TextView noResultsText;
+    private MaterialButton btnSave;
     private AppListAdapter adapter;
     private AppRepository repository;
+    private AppCatalogLoader catalogLoader;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_app_list);
 
-        repository = new AppRepository(this);
+        repository = AppRepository.getInstance(this);
         
         recyclerView = findViewById(R.id.recyclerView);
         progressBar = findViewById(R.id.progressBar);
         searchView = findViewById(R.id.searchView);
         appCountText = findViewById(R.id.appCountText);
         noResultsText = findViewById(R.id.noResultsText);
-        MaterialButton btnSave = findViewById(R.id.btnSave);
+        btnSave = findViewById(R.id.btnSave);
         MaterialButton btnCancel = findViewById(R.id.btnCancel);
 
-        adapter = new AppListAdapter();
+        adapter = new AppListAdapter(IconCache.getInstance(this));
         adapter.setOnFilterListener(this);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(adapter);
@@ -95,105 +95,48 @@ public class AppListActivity extends AppCompatActivity implements AppListAdapter
     }
 
     private void loadInstalledApps() {
-        new LoadAppsTask().execute();
+        progressBar.setVisibility(View.VISIBLE);
+        recyclerView.setVisibility(View.GONE);
+        // Saving replaces the monitored apps with the selection, which is only whole once every app is listed
+        btnSave.setEnabled(false);
+        catalogLoader = new AppCatalogLoader(this, repository);
+        catalogLoader.load((apps, complete) -> {
+            // Batches arrive sorted and merged, the adapter keeps any query applied
+            adapter.setAppList(apps);
+            if (complete) {
+                progressBar.setVisibility(View.GONE);
+                btnSave.setEnabled(true);
+            }
+        });
     }
 
-    private void saveSelectedApps() {
-        List<AppInfo> selectedApps = adapter.getSelectedApps();
-        List<MonitoredApp> monitoredApps = new ArrayList<>();
-
-        for (AppInfo appInfo : selectedApps) {
-            MonitoredApp monitoredApp = new MonitoredApp();
-            monitoredApp.setPackageName(appInfo.getPackageName());
-            monitoredApp.setAppName(appInfo.getAppName());
-            monitoredApp.setDelaySeconds(45); // Default 45 seconds
-            monitoredApp.setEnabled(true);
-            monitoredApps.add(monitoredApp);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (catalogLoader != null) {
+            catalogLoader.cancel();
         }
+        adapter.shutdown();
+    }
 
-        // Merge with existing apps
-        List<MonitoredApp> existingApps = repository.getMonitoredApps();
-        for (MonitoredApp existingApp : existingApps) {
-            boolean stillMonitored = false;
-            for (MonitoredApp newApp : monitoredApps) {
-                if (newApp.getPackageName().equals(existingApp.getPackageName())) {
-                    stillMonitored = true;
-                    // Keep the existing delay setting
-                    newApp.setDelaySeconds(existingApp.getDelaySeconds());
-                    break;
-                }
-            }
-            // If an app was previously monitored but not selected now, remove it
-            if (!stillMonitored) {
-                // It will be excluded from the new list
+    private void saveSelectedApps() {
+        List<AppInfo> selectedApps = adapter.getSelectedApps();
+        repository.update(tx -> {
+            // Selected apps in picker order, previously monitored ones keep their delay
+            List<MonitoredApp> monitoredApps = new ArrayList<>(selectedApps.size());
+            for (AppInfo appInfo : selectedApps) {
+                MonitoredApp existingApp = tx.get(appInfo.getPackageName());
+                monitoredApps.add(new MonitoredApp(appInfo.getPackageName(), appInfo.getAppName(),
+                        existingApp != null ? existingApp.getDelaySeconds() : 45, // Default 45 seconds
+                        true));
             }
-        }
-
-        repository.saveMonitoredApps(monitoredApps);
+            tx.setAll(monitoredApps);
+        });
         
         // Return to main activity
         finish();
     }
 
-    private class LoadAppsTask extends AsyncTask<Void, Void, List<AppInfo>> {
-
-        @Override
-        protected void onPreExecute() {
-            progressBar.setVisibility(View.VISIBLE);
-            recyclerView.setVisibility(View.GONE);
-        }
-
-        @Override
-        protected List<AppInfo> doInBackground(Void... voids) {
-            List<AppInfo> appList = new ArrayList<>();
-            PackageManager pm = getPackageManager();
-            List<ApplicationInfo> packages = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-            
-            List<MonitoredApp> monitoredApps = repository.getMonitoredApps();
-
-            for (ApplicationInfo packageInfo : packages) {
-                try {
-                    // Only show apps that have a launcher icon (launchable apps)
-                    if (pm.getLaunchIntentForPackage(packageInfo.packageName) != null) {
-                        String appName = pm.getApplicationLabel(packageInfo).toString();
-                        AppInfo appInfo = new AppInfo(
-                                packageInfo.packageName,
-                                appName,
-                                pm.getApplicationIcon(packageInfo)
-                        );
-                        
-                        // Check if this app is already monitored
-                        for (MonitoredApp monitoredApp : monitoredApps) {
-                            if (monitoredApp.getPackageName().equals(packageInfo.packageName)) {
-                                appInfo.setSelected(true);
-                                break;
-                            }
-                        }
-                        
-                        appList.add(appInfo);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-
-            // Sort by app name
-            Collections.sort(appList, (a, b) -> a.getAppName().compareToIgnoreCase(b.getAppName()));
-
-            return appList;
-        }
-
-        @Override
-        protected void onPostExecute(List<AppInfo> appInfos) {
-            adapter.setAppList(appInfos);
-            progressBar.setVisibility(View.GONE);
-            recyclerView.setVisibility(View.VISIBLE);
-            
-            // Show initial count
-            updateAppCount(appInfos.size(), appInfos.size());
-        }
-    }
-
     @Override
     public void onFilterComplete(int filteredCount, int totalCount) {
         updateAppCount(filteredCount, totalCount);
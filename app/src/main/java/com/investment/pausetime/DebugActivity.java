@@ -0,0 +1,138 @@
+package com.investment.pausetime;
+
+import android.os.Bundle;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.materialswitch.MaterialSwitch;
+import com.investment.pausetime.repository.OverlaySettings;
+import com.investment.pausetime.service.EventTraceRecorder;
+import com.investment.pausetime.service.FrameTimeTracker;
+import com.investment.pausetime.service.MonitoringStats;
+import com.investment.pausetime.service.PauseLatencyTracker;
+import com.investment.pausetime.service.UsageLog;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debug-build screen showing in-process performance counters of the
+ * monitoring and overlay services, and switches to compare overlay modes.
+ */
+public class DebugActivity extends AppCompatActivity {
+
+    private static final long USAGE_PERIOD = TimeUnit.DAYS.toMillis(7);
+    // Leaving a pause and not coming back within this counts as giving up on the app
+    private static final long RETURN_WINDOW = TimeUnit.MINUTES.toMillis(10);
+
+    private TextView eventStatsText;
+    private TextView usageText;
+    private TextView latencyText;
+    private TextView frameTimeText;
+    // Reads the usage log and trace files, which may touch the disk
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "DebugActivity"));
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_debug);
+
+        MaterialToolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+        toolbar.setNavigationOnClickListener(v -> finish());
+
+        eventStatsText = findViewById(R.id.eventStatsText);
+        usageText = findViewById(R.id.usageText);
+        latencyText = findViewById(R.id.latencyText);
+        frameTimeText = findViewById(R.id.frameTimeText);
+        OverlaySettings settings = new OverlaySettings(this);
+        MaterialSwitch switchWarmOverlay = findViewById(R.id.switchWarmOverlay);
+        switchWarmOverlay.setChecked(settings.isWarmOverlayEnabled());
+        switchWarmOverlay.setOnCheckedChangeListener((buttonView, isChecked) ->
+                settings.setWarmOverlayEnabled(isChecked));
+        MaterialSwitch switchLegacyRenderer = findViewById(R.id.switchLegacyRenderer);
+        switchLegacyRenderer.setChecked(settings.isLegacyWaveRendererEnabled());
+        switchLegacyRenderer.setOnCheckedChangeListener((buttonView, isChecked) ->
+                settings.setLegacyWaveRendererEnabled(isChecked));
+        MaterialSwitch switchReducedPower = findViewById(R.id.switchReducedPower);
+        switchReducedPower.setChecked(settings.isReducedPowerEnabled());
+        switchReducedPower.setOnCheckedChangeListener((buttonView, isChecked) ->
+                settings.setReducedPowerEnabled(isChecked));
+        MaterialSwitch switchEventTrace = findViewById(R.id.switchEventTrace);
+        switchEventTrace.setChecked(settings.isEventTraceEnabled());
+        switchEventTrace.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            settings.setEventTraceEnabled(isChecked);
+            refresh();
+        });
+
+        MaterialButton btnClearLatency = findViewById(R.id.btnClearLatency);
+        btnClearLatency.setOnClickListener(v -> {
+            PauseLatencyTracker.getInstance().clear();
+            FrameTimeTracker.getInstance().clear();
+            refresh();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refresh();
+    }
+
+    private void refresh() {
+        latencyText.setText(PauseLatencyTracker.getInstance().report());
+        frameTimeText.setText(FrameTimeTracker.getInstance().report());
+        executor.execute(() -> {
+            String eventStats = String.format("Received: %d\nActed on: %d\nFilter updates: %d\nTrace: %s",
+                    MonitoringStats.getEventsReceived(),
+                    MonitoringStats.getEventsActedOn(),
+                    MonitoringStats.getFilterUpdates(),
+                    describeTrace());
+            String usage = describeUsage();
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    eventStatsText.setText(eventStats);
+                    usageText.setText(usage);
+                }
+            });
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        executor.shutdown();
+    }
+
+    // Background thread
+    private String describeUsage() {
+        UsageLog usageLog = UsageLog.getInstance(this);
+        UsageLog.Summary summary = usageLog.summarize(System.currentTimeMillis() - USAGE_PERIOD, RETURN_WINDOW);
+        return String.format("Apps opened: %d\nPauses shown: %d\nCompleted: %d\nLeft during pause: %d\n" +
+                        "Gave up (not back in %d min): %d\nLog: %d KB in files/usage",
+                summary.appOpens, summary.pausesShown, summary.pausesCompleted, summary.pausesAbandoned,
+                TimeUnit.MILLISECONDS.toMinutes(RETURN_WINDOW), summary.gaveUp,
+                (usageLog.getSizeBytes() + 1023) / 1024);
+    }
+
+    // Background thread
+    private String describeTrace() {
+        File[] files = EventTraceRecorder.getDirectory(this).listFiles();
+        long bytes = 0;
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        return bytes == 0 ? "none" : (bytes + 1023) / 1024 + " KB in files/traces";
+    }
+}
@@ -2,6 +2,7 @@ package com.investment.pausetime;
 
 import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -21,6 +22,7 @@ import com.investment.pausetime.adapter.MonitoredAppAdapter;
 import com.investment.pausetime.databinding.ActivityMainBinding;
 import com.investment.pausetime.model.MonitoredApp;
 import com.investment.pausetime.repository.AppRepository;
+import com.investment.pausetime.repository.OverlaySettings;
 
 import android.view.Menu;
 import android.view.MenuItem;
@@ -45,7 +47,7 @@ public class MainActivity extends AppCompatActivity implements MonitoredAppAdapt
         setContentView(binding.getRoot());
 
         setSupportActionBar(binding.toolbar);
-        repository = new AppRepository(this);
+        repository = AppRepository.getInstance(this);
 
         // Initialize views
         welcomeLayout = findViewById(R.id.welcomeLayout);
@@ -64,8 +66,18 @@ public class MainActivity extends AppCompatActivity implements MonitoredAppAdapt
             }
         });
         
-        // Load monitored apps
-        loadMonitoredApps();
+        // Load monitored apps, later changes arrive as new snapshots
+        showMonitoredApps(repository.getMonitoredAppsSnapshot());
+        repository.addOnMonitoredAppsChangedListener(monitoredAppsChangedListener);
+    }
+
+    private final AppRepository.OnMonitoredAppsChangedListener monitoredAppsChangedListener =
+            (apps, changes) -> runOnUiThread(() -> showMonitoredApps(apps));
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.removeOnMonitoredAppsChangedListener(monitoredAppsChangedListener);
     }
 
     @Override
@@ -80,13 +92,13 @@ public class MainActivity extends AppCompatActivity implements MonitoredAppAdapt
             // Permissions are missing, allow showing dialog again if needed
             permissionDialogShown = false;
         }
-        // Reload apps when returning from other activities
-        loadMonitoredApps();
+        if (!repository.getMonitoredAppsSnapshot().isEmpty()) {
+            checkPermissionsForMonitoredApps();
+        }
     }
 
-    private void loadMonitoredApps() {
-        List<MonitoredApp> apps = repository.getMonitoredApps();
-        
+    private void showMonitoredApps(List<MonitoredApp> apps) {
+        adapter.submitList(apps);
         if (apps.isEmpty()) {
             // Show welcome screen
             welcomeLayout.setVisibility(View.VISIBLE);
@@ -95,8 +107,7 @@ public class MainActivity extends AppCompatActivity implements MonitoredAppAdapt
             // Show monitored apps
             welcomeLayout.setVisibility(View.GONE);
             contentLayout.setVisibility(View.VISIBLE);
-            adapter.setAppList(apps);
-            
+
             // Show permission reminder only if apps are monitored but permissions are missing
             checkPermissionsForMonitoredApps();
         }
@@ -131,6 +142,10 @@ public class MainActivity extends AppCompatActivity implements MonitoredAppAdapt
     }
 
     private boolean hasOverlayPermission() {
+        // The accessibility overlay is drawn without the draw-over-other-apps permission
+        if (new OverlaySettings(this).isAccessibilityOverlayEnabled()) {
+            return true;
+        }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             return Settings.canDrawOverlays(this);
         }
@@ -209,6 +224,9 @@ public class MainActivity extends AppCompatActivity implements MonitoredAppAdapt
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        // Performance counters are only exposed in debuggable builds
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        menu.findItem(R.id.action_debug).setVisible(debuggable);
         return true;
     }
 
@@ -226,6 +244,10 @@ public class MainActivity extends AppCompatActivity implements MonitoredAppAdapt
             startActivity(intent);
             return true;
         }
+        if (id == R.id.action_debug) {
+            startActivity(new Intent(this, DebugActivity.class));
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
@@ -233,12 +255,10 @@ public class MainActivity extends AppCompatActivity implements MonitoredAppAdapt
     @Override
     public void onDelayChanged(MonitoredApp app, int newDelay) {
         repository.updateAppDelay(app.getPackageName(), newDelay);
-        loadMonitoredApps();
     }
 
     @Override
     public void onAppDeleted(MonitoredApp app) {
         repository.removeMonitoredApp(app.getPackageName());
-        loadMonitoredApps();
     }
 }
\ No newline at end of file
@@ -9,9 +9,11 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.materialswitch.MaterialSwitch;
 import com.investment.pausetime.adapter.MonitoredAppAdapter;
 import com.investment.pausetime.model.MonitoredApp;
 import com.investment.pausetime.repository.AppRepository;
+import com.investment.pausetime.repository.OverlaySettings;
 
 import java.util.List;
 
@@ -27,7 +29,7 @@ public class SettingsActivity extends AppCompatActivity implements MonitoredAppA
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_settings);
 
-        repository = new AppRepository(this);
+        repository = AppRepository.getInstance(this);
 
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -36,6 +38,12 @@ public class SettingsActivity extends AppCompatActivity implements MonitoredAppA
         }
         toolbar.setNavigationOnClickListener(v -> finish());
 
+        OverlaySettings overlaySettings = new OverlaySettings(this);
+        MaterialSwitch switchAccessibilityOverlay = findViewById(R.id.switchAccessibilityOverlay);
+        switchAccessibilityOverlay.setChecked(overlaySettings.isAccessibilityOverlayEnabled());
+        switchAccessibilityOverlay.setOnCheckedChangeListener((buttonView, isChecked) ->
+                overlaySettings.setAccessibilityOverlayEnabled(isChecked));
+
         recyclerView = findViewById(R.id.recyclerView);
         emptyText = findViewById(R.id.emptyText);
 
@@ -43,38 +51,39 @@ public class SettingsActivity extends AppCompatActivity implements MonitoredAppA
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(adapter);
 
-        loadMonitoredApps();
+        showMonitoredApps(repository.getMonitoredAppsSnapshot());
+        // Edits here and saves from other screens arrive as new snapshots
+        repository.addOnMonitoredAppsChangedListener(monitoredAppsChangedListener);
     }
 
-    private void loadMonitoredApps() {
-        List<MonitoredApp> apps = repository.getMonitoredApps();
-        
+    private final AppRepository.OnMonitoredAppsChangedListener monitoredAppsChangedListener =
+            (apps, changes) -> runOnUiThread(() -> showMonitoredApps(apps));
+
+    private void showMonitoredApps(List<MonitoredApp> apps) {
         if (apps.isEmpty()) {
             emptyText.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
             emptyText.setVisibility(View.GONE);
             recyclerView.setVisibility(View.VISIBLE);
-            adapter.setAppList(apps);
         }
+        adapter.submitList(apps);
     }
 
     @Override
     public void onDelayChanged(MonitoredApp app, int newDelay) {
         repository.updateAppDelay(app.getPackageName(), newDelay);
-        loadMonitoredApps();
     }
 
     @Override
     public void onAppDeleted(MonitoredApp app) {
         repository.removeMonitoredApp(app.getPackageName());
-        loadMonitoredApps();
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        loadMonitoredApps();
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.removeOnMonitoredAppsChangedListener(monitoredAppsChangedListener);
     }
 }
 
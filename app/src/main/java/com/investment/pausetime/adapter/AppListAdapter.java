@@ -1,5 +1,8 @@
 package com.investment.pausetime.adapter;
 
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,27 +11,96 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.investment.pausetime.R;
 import com.investment.pausetime.model.AppInfo;
+import com.investment.pausetime.utils.AppSearchIndex;
+import com.investment.pausetime.utils.IconCache;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHolder> {
+/**
+ * App picker rows. Icons are fetched from {@link IconCache} when a row binds,
+ * the request is cancelled when the row is recycled, and a few rows ahead of
+ * the scroll direction are prefetched, so only icons near the viewport are
+ * ever loaded.
+ *
+ * Search runs against an {@link AppSearchIndex} on a background thread,
+ * debounced while typing, and the result is applied through DiffUtil so only
+ * rows that changed rebind.
+ */
+public class AppListAdapter extends ListAdapter<AppInfo, AppListAdapter.ViewHolder> {
 
-    private List<AppInfo> appList;
-    private List<AppInfo> appListFull; // Backup of full list for search
+    private static final int PREFETCH_ROWS = 6;
+    private static final long SEARCH_DEBOUNCE = 120;
+
+    private static final DiffUtil.ItemCallback<AppInfo> DIFF_CALLBACK = new DiffUtil.ItemCallback<AppInfo>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            return oldItem.getPackageName().equals(newItem.getPackageName());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            // Rows are updated in place when selected, a changed label comes as a new AppInfo
+            return oldItem == newItem;
+        }
+    };
+
+    private final IconCache iconCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "AppSearch"));
+    private final Runnable searchRunnable = this::runSearch;
+    private List<AppInfo> appListFull = new ArrayList<>(); // Backup of full list for search
     private OnFilterListener filterListener;
+    private String currentQuery;
+    // Search thread only
+    private AppSearchIndex searchIndex = new AppSearchIndex(appListFull);
+    private AppSearchIndex.Result lastResult;
+    // Bumped on every list or query change, stale results are dropped
+    private int generation;
 
     public interface OnFilterListener {
         void onFilterComplete(int filteredCount, int totalCount);
     }
 
-    public AppListAdapter() {
-        this.appList = new ArrayList<>();
-        this.appListFull = new ArrayList<>();
+    private final RecyclerView.OnScrollListener prefetchListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (dy == 0 || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+                return;
+            }
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            List<AppInfo> current = getCurrentList();
+            int from;
+            int to;
+            if (dy > 0) {
+                from = layoutManager.findLastVisibleItemPosition() + 1;
+                to = Math.min(current.size(), from + PREFETCH_ROWS);
+            } else {
+                to = layoutManager.findFirstVisibleItemPosition();
+                from = Math.max(0, to - PREFETCH_ROWS);
+            }
+            for (int i = from; i < to; i++) {
+                String packageName = current.get(i).getPackageName();
+                if (iconCache.getCached(packageName) == null) {
+                    iconCache.prefetch(packageName);
+                }
+            }
+        }
+    };
+
+    public AppListAdapter(IconCache iconCache) {
+        super(DIFF_CALLBACK);
+        this.iconCache = iconCache;
     }
 
     public void setOnFilterListener(OnFilterListener listener) {
@@ -36,9 +108,15 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
     }
 
     public void setAppList(List<AppInfo> appList) {
-        this.appList = appList;
-        this.appListFull = new ArrayList<>(appList); // Keep a copy for filtering
-        notifyDataSetChanged();
+        List<AppInfo> full = new ArrayList<>(appList); // Keep a copy for filtering
+        appListFull = full;
+        searchExecutor.execute(() -> {
+            searchIndex = new AppSearchIndex(full);
+            lastResult = null;
+        });
+        // The list may grow while loading, keep the user's query applied
+        mainHandler.removeCallbacks(searchRunnable);
+        runSearch();
     }
 
     public List<AppInfo> getSelectedApps() {
@@ -52,28 +130,54 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
         return selectedApps;
     }
 
+    /** Applies {@code query} after a short pause in typing. */
     public void filter(String query) {
-        appList.clear();
-        
+        currentQuery = query;
+        generation++;
+        mainHandler.removeCallbacks(searchRunnable);
         if (query == null || query.isEmpty()) {
-            // Show all apps if query is empty
-            appList.addAll(appListFull);
+            // Show all apps if query is empty, nothing to match
+            runSearch();
         } else {
-            // Filter apps by name
-            String lowerCaseQuery = query.toLowerCase();
-            for (AppInfo app : appListFull) {
-                if (app.getAppName().toLowerCase().contains(lowerCaseQuery)) {
-                    appList.add(app);
-                }
-            }
+            mainHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE);
         }
-        
-        notifyDataSetChanged();
-        
-        // Notify listener about filter results
-        if (filterListener != null) {
-            filterListener.onFilterComplete(appList.size(), appListFull.size());
+    }
+
+    /** Stops the search thread. Call when the list is no longer shown. */
+    public void shutdown() {
+        mainHandler.removeCallbacks(searchRunnable);
+        searchExecutor.shutdownNow();
+    }
+
+    // Main thread
+    private void runSearch() {
+        final String query = currentQuery;
+        final int searchGeneration = ++generation;
+        final int totalCount = appListFull.size();
+        if (query == null || query.isEmpty()) {
+            submitResult(appListFull, totalCount);
+            return;
         }
+        searchExecutor.execute(() -> {
+            AppSearchIndex.Result result = searchIndex.search(query, lastResult);
+            lastResult = result;
+            List<AppInfo> matches = searchIndex.toList(result);
+            mainHandler.post(() -> {
+                if (searchGeneration == generation) {
+                    submitResult(matches, totalCount);
+                }
+            });
+        });
+    }
+
+    // Main thread
+    private void submitResult(List<AppInfo> list, int totalCount) {
+        submitList(list, () -> {
+            // Notify listener about filter results
+            if (filterListener != null) {
+                filterListener.onFilterComplete(list.size(), totalCount);
+            }
+        });
     }
 
     @NonNull
@@ -86,19 +190,29 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        AppInfo app = appList.get(position);
-        holder.bind(app);
+        holder.bind(getItem(position));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        holder.cancelIcon();
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(prefetchListener);
     }
 
     @Override
-    public int getItemCount() {
-        return appList.size();
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(prefetchListener);
     }
 
     class ViewHolder extends RecyclerView.ViewHolder {
         private ImageView appIcon;
         private TextView appName;
         private CheckBox checkbox;
+        private IconCache.Request iconRequest;
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -108,8 +222,18 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
         }
 
         public void bind(AppInfo app) {
-            appIcon.setImageDrawable(app.getIcon());
+            cancelIcon();
+            Bitmap icon = iconCache.getCached(app.getPackageName());
+            appIcon.setImageBitmap(icon);
+            if (icon == null) {
+                iconRequest = iconCache.load(app.getPackageName(), (packageName, loaded) -> {
+                    iconRequest = null;
+                    appIcon.setImageBitmap(loaded);
+                });
+            }
             appName.setText(app.getAppName());
+            // Detach the previous row's listener before updating the box
+            checkbox.setOnCheckedChangeListener(null);
             checkbox.setChecked(app.isSelected());
 
             itemView.setOnClickListener(v -> {
@@ -121,6 +245,14 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.ViewHold
                 app.setSelected(isChecked);
             });
         }
+
+        void cancelIcon() {
+            if (iconRequest != null) {
+                iconRequest.cancel();
+                iconRequest = null;
+            }
+            appIcon.setImageDrawable(null);
+        }
     }
 }
 
@@ -11,19 +11,41 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.button.MaterialButton;
 import com.investment.pausetime.R;
 import com.investment.pausetime.model.MonitoredApp;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 
-public class MonitoredAppAdapter extends RecyclerView.Adapter<MonitoredAppAdapter.ViewHolder> {
+/**
+ * Rows of the monitored apps, fed with repository snapshots. DiffUtil and
+ * stable per-package IDs make a single edit rebind a single row.
+ */
+public class MonitoredAppAdapter extends ListAdapter<MonitoredApp, MonitoredAppAdapter.ViewHolder> {
 
-    private List<MonitoredApp> appList;
-    private OnAppActionListener listener;
+    private static final DiffUtil.ItemCallback<MonitoredApp> DIFF_CALLBACK = new DiffUtil.ItemCallback<MonitoredApp>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MonitoredApp oldItem, @NonNull MonitoredApp newItem) {
+            return oldItem.getPackageName().equals(newItem.getPackageName());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MonitoredApp oldItem, @NonNull MonitoredApp newItem) {
+            return oldItem.getDelaySeconds() == newItem.getDelaySeconds() &&
+                    oldItem.isEnabled() == newItem.isEnabled() &&
+                    Objects.equals(oldItem.getAppName(), newItem.getAppName());
+        }
+    };
+
+    private final OnAppActionListener listener;
+    // Stable IDs, handed out per package for the lifetime of the adapter
+    private final Map<String, Long> itemIds = new HashMap<>();
 
     public interface OnAppActionListener {
         void onDelayChanged(MonitoredApp app, int newDelay);
@@ -31,13 +53,20 @@ public class MonitoredAppAdapter extends RecyclerView.Adapter<MonitoredAppAdapte
     }
 
     public MonitoredAppAdapter(OnAppActionListener listener) {
-        this.appList = new ArrayList<>();
+        super(DIFF_CALLBACK);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
-    public void setAppList(List<MonitoredApp> appList) {
-        this.appList = appList;
-        notifyDataSetChanged();
+    @Override
+    public long getItemId(int position) {
+        String packageName = getItem(position).getPackageName();
+        Long id = itemIds.get(packageName);
+        if (id == null) {
+            id = (long) itemIds.size();
+            itemIds.put(packageName, id);
+        }
+        return id;
     }
 
     @NonNull
@@ -50,13 +79,7 @@ public class MonitoredAppAdapter extends RecyclerView.Adapter<MonitoredAppAdapte
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        MonitoredApp app = appList.get(position);
-        holder.bind(app);
-    }
-
-    @Override
-    public int getItemCount() {
-        return appList.size();
+        holder.bind(getItem(position));
     }
 
     class ViewHolder extends RecyclerView.ViewHolder {
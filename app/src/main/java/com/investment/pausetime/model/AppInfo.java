@@ -1,17 +1,17 @@
 package com.investment.pausetime.model;
 
-import android.graphics.drawable.Drawable;
-
+/**
+ * Row of the app picker. The icon is not held here; the package name is the
+ * key it is loaded by from {@code IconCache} when the row is shown.
+ */
 public class AppInfo {
     private String packageName;
     private String appName;
-    private Drawable icon;
     private boolean isSelected;
 
-    public AppInfo(String packageName, String appName, Drawable icon) {
+    public AppInfo(String packageName, String appName) {
         this.packageName = packageName;
         this.appName = appName;
-        this.icon = icon;
         this.isSelected = false;
     }
 
@@ -31,14 +31,6 @@ public class AppInfo {
         this.appName = appName;
     }
 
-    public Drawable getIcon() {
-        return icon;
-    }
-
-    public void setIcon(Drawable icon) {
-        this.icon = icon;
-    }
-
     public boolean isSelected() {
         return isSelected;
     }
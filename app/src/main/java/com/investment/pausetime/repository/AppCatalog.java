@@ -0,0 +1,196 @@
+package com.investment.pausetime.repository;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent catalog of launchable apps, so the app picker can open from
+ * disk or memory instead of rescanning the package manager. Kept current by
+ * package broadcasts while the process runs (the accessibility service keeps
+ * it alive), and reconciled against {@code lastUpdateTime} by
+ * {@link AppCatalogLoader} whenever the picker opens.
+ */
+public class AppCatalog {
+
+    private static final String TAG = "AppCatalog";
+    private static final String FILE_NAME = "app_catalog.bin";
+
+    public static final class Entry {
+        public final String packageName;
+        public final String label;
+        public final long versionCode;
+        public final long lastUpdateTime;
+
+        public Entry(String packageName, String label, long versionCode, long lastUpdateTime) {
+            this.packageName = packageName;
+            this.label = label;
+            this.versionCode = versionCode;
+            this.lastUpdateTime = lastUpdateTime;
+        }
+    }
+
+    private static volatile AppCatalog instance;
+
+    private final Context context;
+    private final AppCatalogStore store;
+    // Broadcast updates and saves, in order
+    private final ExecutorService updateExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "AppCatalog"));
+    private final Object lock = new Object();
+    private Map<String, Entry> entries;
+    private boolean watching;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+            String packageName = data.getSchemeSpecificPart();
+            boolean replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+            if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction()) && replacing) {
+                // PACKAGE_REPLACED follows
+                return;
+            }
+            updateExecutor.execute(() -> refreshPackage(packageName));
+        }
+    };
+
+    public static AppCatalog getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppCatalog.class) {
+                if (instance == null) {
+                    instance = new AppCatalog(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private AppCatalog(Context context) {
+        this.context = context;
+        this.store = new AppCatalogStore(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    /** Registers for package add, remove and replace broadcasts. Idempotent. */
+    public void startWatchingPackages() {
+        synchronized (lock) {
+            if (watching) {
+                return;
+            }
+            watching = true;
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        context.registerReceiver(packageReceiver, filter);
+    }
+
+    /** Catalog contents in no particular order. Reads the file on first use, so not on the main thread. */
+    public List<Entry> getEntries() {
+        synchronized (lock) {
+            return new ArrayList<>(ensureLoaded().values());
+        }
+    }
+
+    /** Replaces the whole catalog after a full reconcile and saves it. */
+    public void replaceAll(List<Entry> reconciled) {
+        Map<String, Entry> map = new HashMap<>(reconciled.size() * 2);
+        for (Entry entry : reconciled) {
+            map.put(entry.packageName, entry);
+        }
+        synchronized (lock) {
+            entries = map;
+        }
+        updateExecutor.execute(this::save);
+    }
+
+    /** Builds the entry for one launcher activity. Worker thread. */
+    static Entry createEntry(PackageManager pm, ResolveInfo launcher, PackageInfo packageInfo) {
+        String label = launcher.activityInfo.applicationInfo.loadLabel(pm).toString();
+        return new Entry(packageInfo.packageName, label, versionCodeOf(packageInfo),
+                packageInfo.lastUpdateTime);
+    }
+
+    @SuppressWarnings("deprecation")
+    static long versionCodeOf(PackageInfo packageInfo) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? packageInfo.getLongVersionCode()
+                : packageInfo.versionCode;
+    }
+
+    // Update thread
+    private void refreshPackage(String packageName) {
+        PackageManager pm = context.getPackageManager();
+        Intent launcherIntent = new Intent(Intent.ACTION_MAIN)
+                .addCategory(Intent.CATEGORY_LAUNCHER)
+                .setPackage(packageName);
+        List<ResolveInfo> launchers = pm.queryIntentActivities(launcherIntent, 0);
+        Entry entry = null;
+        if (!launchers.isEmpty()) {
+            try {
+                entry = createEntry(pm, launchers.get(0), pm.getPackageInfo(packageName, 0));
+            } catch (PackageManager.NameNotFoundException e) {
+                // Removed again before we got to it
+            }
+        }
+        synchronized (lock) {
+            Map<String, Entry> current = ensureLoaded();
+            if (entry != null) {
+                current.put(packageName, entry);
+            } else if (current.remove(packageName) == null) {
+                return;
+            }
+        }
+        Log.d(TAG, (entry != null ? "Updated " : "Removed ") + packageName);
+        save();
+    }
+
+    // Caller holds lock
+    private Map<String, Entry> ensureLoaded() {
+        if (entries == null) {
+            entries = new HashMap<>();
+            try {
+                for (Entry entry : store.load()) {
+                    entries.put(entry.packageName, entry);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to load app catalog", e);
+            }
+        }
+        return entries;
+    }
+
+    // Update thread
+    private void save() {
+        List<Entry> snapshot;
+        synchronized (lock) {
+            snapshot = new ArrayList<>(ensureLoaded().values());
+        }
+        try {
+            store.save(snapshot);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save app catalog", e);
+        }
+    }
+}
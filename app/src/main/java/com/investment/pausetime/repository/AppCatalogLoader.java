@@ -0,0 +1,235 @@
+package com.investment.pausetime.repository;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.investment.pausetime.model.AppInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the launchable apps for the app picker. The persisted
+ * {@link AppCatalog} is shown first, then reconciled with one
+ * {@code queryIntentActivities(MAIN/LAUNCHER)} call: apps whose
+ * {@code lastUpdateTime} is unchanged keep their cached label, and only new or
+ * updated ones have their label resolved, in batches on a small pool. Each
+ * finished batch is delivered on the main thread, so the list fills in while
+ * the rest is still loading.
+ */
+public class AppCatalogLoader {
+
+    private static final String TAG = "AppCatalogLoader";
+    // Small first batch so the first screen shows quickly, bigger ones after
+    private static final int FIRST_BATCH_SIZE = 16;
+    private static final int BATCH_SIZE = 48;
+
+    public static final Comparator<AppInfo> BY_NAME =
+            (a, b) -> a.getAppName().compareToIgnoreCase(b.getAppName());
+
+    public interface Listener {
+        /**
+         * Called on the main thread after each batch with everything loaded so
+         * far, sorted by name. {@code complete} is true for the last call.
+         */
+        void onAppsLoaded(List<AppInfo> apps, boolean complete);
+    }
+
+    private final Context context;
+    private final AppRepository repository;
+    private final AppCatalog catalog;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService executor;
+    // Main thread only. Rows are kept per package so selections survive updates.
+    private final Map<String, AppInfo> rows = new HashMap<>();
+    private int pendingBatches;
+    private boolean cancelled;
+
+    public AppCatalogLoader(Context context, AppRepository repository) {
+        this.context = context.getApplicationContext();
+        this.repository = repository;
+        this.catalog = AppCatalog.getInstance(context);
+    }
+
+    /** Starts loading. Must be called on the main thread, at most once. */
+    public void load(Listener listener) {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        executor = Executors.newFixedThreadPool(threads, runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "AppCatalogLoader"));
+        executor.execute(() -> loadAndReconcile(listener));
+    }
+
+    /** Stops delivering results and drops pending work. Main thread. */
+    public void cancel() {
+        cancelled = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Worker thread
+    private void loadAndReconcile(Listener listener) {
+        List<AppCatalog.Entry> cached = catalog.getEntries();
+        if (!cached.isEmpty()) {
+            mainHandler.post(() -> deliver(cached, null, false, listener));
+        }
+
+        PackageManager pm = context.getPackageManager();
+        Intent launcherIntent = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        List<ResolveInfo> activities = pm.queryIntentActivities(launcherIntent, 0);
+        Map<String, PackageInfo> packages = new HashMap<>();
+        for (PackageInfo info : pm.getInstalledPackages(0)) {
+            packages.put(info.packageName, info);
+        }
+
+        // Apps with several launcher activities are listed once
+        Map<String, ResolveInfo> launchers = new LinkedHashMap<>(activities.size() * 2);
+        for (ResolveInfo info : activities) {
+            String packageName = info.activityInfo.packageName;
+            if (!launchers.containsKey(packageName) && packages.containsKey(packageName)) {
+                launchers.put(packageName, info);
+            }
+        }
+
+        Map<String, AppCatalog.Entry> cachedByPackage = new HashMap<>(cached.size() * 2);
+        for (AppCatalog.Entry entry : cached) {
+            cachedByPackage.put(entry.packageName, entry);
+        }
+        List<AppCatalog.Entry> unchanged = new ArrayList<>();
+        List<ResolveInfo> changed = new ArrayList<>();
+        for (Map.Entry<String, ResolveInfo> launcher : launchers.entrySet()) {
+            AppCatalog.Entry entry = cachedByPackage.get(launcher.getKey());
+            if (entry != null && entry.lastUpdateTime == packages.get(launcher.getKey()).lastUpdateTime) {
+                unchanged.add(entry);
+            } else {
+                changed.add(launcher.getValue());
+            }
+        }
+        Log.d(TAG, launchers.size() + " launchable apps, " + changed.size() + " new or updated, "
+                + (cached.size() - unchanged.size()) + " cached entries stale or removed");
+
+        Set<String> launchable = new HashSet<>(launchers.keySet());
+        if (changed.isEmpty()) {
+            mainHandler.post(() -> deliver(unchanged, launchable, true, listener));
+            if (unchanged.size() != cached.size()) {
+                catalog.replaceAll(unchanged);
+            }
+            return;
+        }
+
+        List<List<ResolveInfo>> batches = new ArrayList<>();
+        int start = 0;
+        while (start < changed.size()) {
+            int size = batches.isEmpty() ? FIRST_BATCH_SIZE : BATCH_SIZE;
+            int end = Math.min(changed.size(), start + size);
+            batches.add(changed.subList(start, end));
+            start = end;
+        }
+        // Posted before any batch can finish, so the count is set when they arrive
+        int batchCount = batches.size();
+        mainHandler.post(() -> {
+            pendingBatches = batchCount;
+            deliver(unchanged, launchable, false, listener);
+        });
+        Queue<AppCatalog.Entry> reconciled = new ConcurrentLinkedQueue<>(unchanged);
+        // Only a catalog built from every batch is saved; a batch cut short by
+        // cancel() would otherwise drop its apps from the cache
+        AtomicInteger remaining = new AtomicInteger(batchCount);
+        AtomicBoolean incomplete = new AtomicBoolean();
+        for (List<ResolveInfo> batch : batches) {
+            executor.execute(() -> {
+                boolean finished = false;
+                try {
+                    List<AppCatalog.Entry> entries = resolve(pm, batch, packages);
+                    finished = !Thread.currentThread().isInterrupted();
+                    mainHandler.post(() -> deliver(entries, null, --pendingBatches == 0, listener));
+                    reconciled.addAll(entries);
+                } finally {
+                    if (!finished) {
+                        incomplete.set(true);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        if (incomplete.get()) {
+                            Log.d(TAG, "Catalog load did not finish, keeping the cached catalog");
+                        } else {
+                            catalog.replaceAll(new ArrayList<>(reconciled));
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    // Worker thread
+    private List<AppCatalog.Entry> resolve(PackageManager pm, List<ResolveInfo> batch,
+                                           Map<String, PackageInfo> packages) {
+        List<AppCatalog.Entry> entries = new ArrayList<>(batch.size());
+        for (ResolveInfo info : batch) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            String packageName = info.activityInfo.packageName;
+            try {
+                entries.add(AppCatalog.createEntry(pm, info, packages.get(packageName)));
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to load " + packageName, e);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Adds or updates rows for {@code entries}. If {@code retainOnly} is given,
+     * rows for any other package are dropped first. Main thread.
+     */
+    private void deliver(List<AppCatalog.Entry> entries, Set<String> retainOnly, boolean complete,
+                         Listener listener) {
+        if (cancelled) {
+            return;
+        }
+        if (retainOnly != null) {
+            rows.keySet().retainAll(retainOnly);
+        }
+        for (AppCatalog.Entry entry : entries) {
+            AppInfo row = rows.get(entry.packageName);
+            if (row == null) {
+                row = new AppInfo(entry.packageName, entry.label);
+                row.setSelected(repository.getMonitoredApp(entry.packageName) != null);
+                rows.put(entry.packageName, row);
+            } else if (!row.getAppName().equals(entry.label)) {
+                // New instance so the list diff sees the change
+                AppInfo renamed = new AppInfo(entry.packageName, entry.label);
+                renamed.setSelected(row.isSelected());
+                rows.put(entry.packageName, renamed);
+            }
+        }
+        List<AppInfo> sorted = new ArrayList<>(rows.values());
+        Collections.sort(sorted, BY_NAME);
+        listener.onAppsLoaded(Collections.unmodifiableList(sorted), complete);
+        if (complete) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.investment.pausetime.repository;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Binary file holding the installed-app catalog, framed by {@link RecordFile}.
+ *
+ * <pre>
+ * record : UTF packageName, UTF label, long versionCode, long lastUpdateTime
+ * </pre>
+ */
+public class AppCatalogStore {
+    static final int MAGIC = 0x50544143; // "PTAC"
+    static final int VERSION = 1;
+
+    private static final RecordFile<AppCatalog.Entry> FORMAT = new RecordFile<>(
+            MAGIC, VERSION, "catalog", new RecordFile.Codec<AppCatalog.Entry>() {
+                @Override
+                public void write(AppCatalog.Entry entry, DataOutputStream out) throws IOException {
+                    out.writeUTF(entry.packageName);
+                    out.writeUTF(entry.label);
+                    out.writeLong(entry.versionCode);
+                    out.writeLong(entry.lastUpdateTime);
+                }
+
+                @Override
+                public AppCatalog.Entry read(DataInputStream in, int version) throws IOException {
+                    String packageName = in.readUTF();
+                    String label = in.readUTF();
+                    long versionCode = in.readLong();
+                    long lastUpdateTime = in.readLong();
+                    return new AppCatalog.Entry(packageName, label, versionCode, lastUpdateTime);
+                }
+            });
+
+    private final File file;
+
+    public AppCatalogStore(File file) {
+        this.file = file;
+    }
+
+    public List<AppCatalog.Entry> load() throws IOException {
+        return FORMAT.load(file);
+    }
+
+    public synchronized void save(Collection<AppCatalog.Entry> entries) throws IOException {
+        FORMAT.save(file, entries);
+    }
+
+    static byte[] encode(Collection<AppCatalog.Entry> entries) throws IOException {
+        return FORMAT.encode(entries);
+    }
+
+    static List<AppCatalog.Entry> decode(byte[] bytes) throws IOException {
+        return FORMAT.decode(bytes);
+    }
+}
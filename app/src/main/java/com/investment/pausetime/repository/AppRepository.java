@@ -2,79 +2,445 @@ package com.investment.pausetime.repository;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.investment.pausetime.model.MonitoredApp;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Monitored-app configuration, shared by the whole process through
+ * {@link #getInstance(Context)}. Reads come from an immutable in-memory
+ * snapshot. Writes go through {@link #update}, which builds the next snapshot
+ * from the current one and publishes it with a compare-and-set, so concurrent
+ * edits from different screens or the service are never lost. The new
+ * snapshot is visible as soon as {@link #update} returns; writing it to disk
+ * happens on a background thread, like the {@code apply()} of the
+ * SharedPreferences this replaced.
+ */
 public class AppRepository {
+    private static final String TAG = "AppRepository";
     private static final String PREFS_NAME = "ReclaimPrefs";
+    private static final String STORE_FILE_NAME = "monitored_apps.bin";
+    // Legacy Gson encoded list, only read once to migrate into the binary store
     private static final String KEY_MONITORED_APPS = "monitored_apps";
-    
+    // Bumped after every store write so other instances drop their snapshot
+    private static final String KEY_MONITORED_APPS_VERSION = "monitored_apps_version";
+    private static final Type MONITORED_APP_LIST_TYPE = new TypeToken<ArrayList<MonitoredApp>>(){}.getType();
+    // A failed store write is retried after this, doubling up to the maximum
+    private static final long MIN_RETRY_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+
+    public interface OnMonitoredAppsChangedListener {
+        /**
+         * {@code apps} is the new read-only snapshot, see
+         * {@link #getMonitoredAppsSnapshot()}, and {@code changes} what differs
+         * from the previous one. Called on the thread that saved.
+         */
+        void onMonitoredAppsChanged(List<MonitoredApp> apps, List<MonitoredAppChange> changes);
+    }
+
+    /** Edits applied by {@link #update}. May run more than once, keep it free of side effects. */
+    public interface Updater {
+        void apply(Transaction tx);
+    }
+
+    /**
+     * A working copy of the apps inside {@link #update}. Returned apps are
+     * read-only; change them through the methods here.
+     */
+    public interface Transaction {
+        MonitoredApp get(String packageName);
+
+        /** The apps as edited so far, in order. Read-only. */
+        List<MonitoredApp> getApps();
+
+        /** Adds {@code app} at the end, or replaces the app with its package in place. */
+        void put(MonitoredApp app);
+
+        boolean remove(String packageName);
+
+        void setDelaySeconds(String packageName, int delaySeconds);
+
+        void setEnabled(String packageName, boolean enabled);
+
+        /** Replaces all apps, in the given order. */
+        void setAll(List<MonitoredApp> apps);
+    }
+
+    private static volatile AppRepository instance;
+
     private final SharedPreferences sharedPreferences;
-    private final Gson gson;
+    private final MonitoredAppStore store;
+    private final List<OnMonitoredAppsChangedListener> listeners = new CopyOnWriteArrayList<>();
+    // Store writes, in order. At most one is queued, it writes whatever is newest when it runs.
+    private final ScheduledExecutorService saveExecutor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "AppRepository"));
+    private final AtomicBoolean saveQueued = new AtomicBoolean();
+    private final Runnable persistRunnable = this::persist;
+    // Save thread only
+    private long retryDelayMs = MIN_RETRY_DELAY_MS;
+
+    // Parsed copy of the store, null when it has to be re-read
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    // Guarded by store. Version of the last snapshot written to disk.
+    private long storedVersion = -1;
+
+    // SharedPreferences only keeps a weak reference to its listeners, so hold on to it here.
+    // Writes from this instance already refreshed the snapshot, only newer foreign writes invalidate it.
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceChangeListener =
+            (prefs, key) -> {
+                if (key != null && !KEY_MONITORED_APPS_VERSION.equals(key)) {
+                    return;
+                }
+                Snapshot current = snapshot.get();
+                if (current != null && current.version >= prefs.getLong(KEY_MONITORED_APPS_VERSION, 0)) {
+                    return;
+                }
+                if (snapshot.compareAndSet(current, null)) {
+                    notifyListeners(current, getSnapshot());
+                }
+            };
+
+    public static AppRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppRepository.class) {
+                if (instance == null) {
+                    Context app = context.getApplicationContext();
+                    instance = new AppRepository(app.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                            new File(app.getFilesDir(), STORE_FILE_NAME));
+                }
+            }
+        }
+        return instance;
+    }
 
-    public AppRepository(Context context) {
-        this.sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        this.gson = new Gson();
+    AppRepository(SharedPreferences sharedPreferences, File storeFile) {
+        this.sharedPreferences = sharedPreferences;
+        this.store = new MonitoredAppStore(storeFile);
+        this.sharedPreferences.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
     }
 
+    /** Replaces all monitored apps with a copy of {@code apps}. */
     public void saveMonitoredApps(List<MonitoredApp> apps) {
-        String json = gson.toJson(apps);
-        sharedPreferences.edit()
-                .putString(KEY_MONITORED_APPS, json)
-                .apply();
+        List<MonitoredApp> copy = copyOf(apps);
+        update(tx -> tx.setAll(copy));
     }
 
-    public List<MonitoredApp> getMonitoredApps() {
-        String json = sharedPreferences.getString(KEY_MONITORED_APPS, null);
-        if (json == null) {
-            return new ArrayList<>();
+    /**
+     * Applies {@code updater} to the current apps and publishes the result as
+     * one new snapshot, with one store write and one listener call. If another
+     * update was published in the meantime, {@code updater} is run again on
+     * top of it. Nothing is written when it changes nothing.
+     */
+    public void update(Updater updater) {
+        Snapshot current = snapshot.get();
+        if (current != null && !current.persistable && snapshot.compareAndSet(current, null)) {
+            // The store could not be read before, try again so the edit starts from its contents
+            notifyListeners(current, getSnapshot());
+        }
+        Snapshot base;
+        Snapshot next;
+        do {
+            base = getSnapshot();
+            TransactionImpl tx = new TransactionImpl(base);
+            updater.apply(tx);
+            if (!tx.modified) {
+                return;
+            }
+            // Past any version another instance wrote, so theirs see this one as newer
+            long version = Math.max(base.version,
+                    sharedPreferences.getLong(KEY_MONITORED_APPS_VERSION, 0)) + 1;
+            next = new Snapshot(version, tx.result(), base.persistable);
+        } while (!snapshot.compareAndSet(base, next));
+        if (!saveQueued.getAndSet(true)) {
+            saveExecutor.execute(persistRunnable);
         }
-        
-        Type listType = new TypeToken<ArrayList<MonitoredApp>>(){}.getType();
-        return gson.fromJson(json, listType);
+        notifyListeners(base, next);
     }
 
+    /**
+     * Registers a listener called after every change to the monitored apps,
+     * whether it was saved through this instance or another one.
+     */
+    public void addOnMonitoredAppsChangedListener(OnMonitoredAppsChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnMonitoredAppsChangedListener(OnMonitoredAppsChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns a fresh, mutable copy of the monitored apps. Changes to it are not
+     * visible to the repository until passed back to {@link #saveMonitoredApps}.
+     */
+    public List<MonitoredApp> getMonitoredApps() {
+        return copyOf(getSnapshot().apps);
+    }
+
+    /**
+     * The current apps without copying. The list and its elements are shared
+     * with the cache and must be treated as read-only; a save replaces the
+     * list instead of changing it, so it is safe to hand to a list differ.
+     */
+    public List<MonitoredApp> getMonitoredAppsSnapshot() {
+        return getSnapshot().apps;
+    }
+
+    /**
+     * Constant-time lookup used on the accessibility event path. The returned
+     * instance is shared with the cache and must be treated as read-only.
+     */
     public MonitoredApp getMonitoredApp(String packageName) {
-        List<MonitoredApp> apps = getMonitoredApps();
-        for (MonitoredApp app : apps) {
-            if (app.getPackageName().equals(packageName)) {
-                return app;
-            }
-        }
-        return null;
+        return getSnapshot().byPackage.get(packageName);
     }
 
     public void updateAppDelay(String packageName, int delaySeconds) {
-        List<MonitoredApp> apps = getMonitoredApps();
-        for (MonitoredApp app : apps) {
-            if (app.getPackageName().equals(packageName)) {
-                app.setDelaySeconds(delaySeconds);
-                break;
-            }
-        }
-        saveMonitoredApps(apps);
+        update(tx -> tx.setDelaySeconds(packageName, delaySeconds));
     }
 
     public void removeMonitoredApp(String packageName) {
-        List<MonitoredApp> apps = getMonitoredApps();
-        apps.removeIf(app -> app.getPackageName().equals(packageName));
-        saveMonitoredApps(apps);
+        update(tx -> tx.remove(packageName));
     }
 
     public boolean isAppMonitored(String packageName) {
-        List<MonitoredApp> apps = getMonitoredApps();
+        MonitoredApp app = getMonitoredApp(packageName);
+        return app != null && app.isEnabled();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot.get();
+        while (current == null) {
+            Snapshot read = readSnapshot();
+            current = snapshot.compareAndSet(null, read) ? read : snapshot.get();
+        }
+        return current;
+    }
+
+    /** Blocks until every update published so far has been written. For tests and benchmarks. */
+    void awaitSaved() {
+        try {
+            saveExecutor.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the newest snapshot if it is not on disk yet, on the save thread.
+     * Updates published while a write was queued or running are folded into
+     * one write, and the store never goes back to an older version. Other
+     * instances only hear of a version once it is on disk. A failed write is
+     * retried with a growing delay until one succeeds.
+     */
+    private void persist() {
+        // Cleared first, so an update published from here on queues another write
+        saveQueued.set(false);
+        synchronized (store) {
+            Snapshot current = snapshot.get();
+            if (current == null || current.version <= storedVersion) {
+                return;
+            }
+            if (!current.persistable) {
+                // Built on a failed read, writing it would replace the apps in the store with nothing
+                Log.w(TAG, "Not saving monitored apps, the store could not be read");
+                return;
+            }
+            try {
+                store.save(current.apps);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save monitored apps, retrying in " + retryDelayMs + " ms", e);
+                // An update published before the retry runs is written by it
+                if (!saveQueued.getAndSet(true)) {
+                    saveExecutor.schedule(persistRunnable, retryDelayMs, TimeUnit.MILLISECONDS);
+                }
+                retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+                return;
+            }
+            retryDelayMs = MIN_RETRY_DELAY_MS;
+            storedVersion = current.version;
+            sharedPreferences.edit()
+                    .putLong(KEY_MONITORED_APPS_VERSION, current.version)
+                    .apply();
+        }
+    }
+
+    private Snapshot readSnapshot() {
+        long version = sharedPreferences.getLong(KEY_MONITORED_APPS_VERSION, 0);
+        if (!store.exists() && sharedPreferences.contains(KEY_MONITORED_APPS)) {
+            return migrateFromJson(version);
+        }
+        try {
+            return new Snapshot(version, store.load(), true);
+        } catch (IOException e) {
+            // Shown as empty, but never saved over the store; the next update reads it again
+            Log.e(TAG, "Failed to load monitored apps", e);
+            return new Snapshot(version, new ArrayList<>(), false);
+        }
+    }
+
+    private Snapshot migrateFromJson(long version) {
+        String json = sharedPreferences.getString(KEY_MONITORED_APPS, null);
+        List<MonitoredApp> apps = json != null
+                ? new Gson().<List<MonitoredApp>>fromJson(json, MONITORED_APP_LIST_TYPE)
+                : null;
+        if (apps == null) {
+            apps = new ArrayList<>();
+        }
+        try {
+            store.save(apps);
+        } catch (IOException e) {
+            // Keep the JSON so the migration is retried on the next cold read
+            Log.e(TAG, "Failed to migrate monitored apps", e);
+            return new Snapshot(version, apps, true);
+        }
+        sharedPreferences.edit()
+                .remove(KEY_MONITORED_APPS)
+                .apply();
+        return new Snapshot(version, apps, true);
+    }
+
+    private void notifyListeners(Snapshot previous, Snapshot current) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        List<MonitoredAppChange> changes = MonitoredAppChange.diff(
+                previous != null ? previous.byPackage : Collections.<String, MonitoredApp>emptyMap(),
+                current.apps, current.byPackage);
+        // Still called with no changes, a reorder or rename matters to lists
+        for (OnMonitoredAppsChangedListener listener : listeners) {
+            listener.onMonitoredAppsChanged(current.apps, changes);
+        }
+    }
+
+    private static List<MonitoredApp> copyOf(List<MonitoredApp> apps) {
+        List<MonitoredApp> copy = new ArrayList<>(apps.size());
         for (MonitoredApp app : apps) {
-            if (app.getPackageName().equals(packageName) && app.isEnabled()) {
-                return true;
+            copy.add(copyOf(app));
+        }
+        return copy;
+    }
+
+    private static MonitoredApp copyOf(MonitoredApp app) {
+        return new MonitoredApp(app.getPackageName(), app.getAppName(),
+                app.getDelaySeconds(), app.isEnabled());
+    }
+
+    private static final class TransactionImpl implements Transaction {
+        private final List<MonitoredApp> baseApps;
+        // Built on the first edit, in snapshot order
+        private LinkedHashMap<String, MonitoredApp> apps;
+        boolean modified;
+
+        TransactionImpl(Snapshot base) {
+            this.baseApps = base.apps;
+        }
+
+        @Override
+        public MonitoredApp get(String packageName) {
+            return edit().get(packageName);
+        }
+
+        @Override
+        public List<MonitoredApp> getApps() {
+            return apps == null ? baseApps : Collections.unmodifiableList(new ArrayList<>(apps.values()));
+        }
+
+        @Override
+        public void put(MonitoredApp app) {
+            edit().put(app.getPackageName(), copyOf(app));
+            modified = true;
+        }
+
+        @Override
+        public boolean remove(String packageName) {
+            boolean removed = edit().remove(packageName) != null;
+            modified |= removed;
+            return removed;
+        }
+
+        @Override
+        public void setDelaySeconds(String packageName, int delaySeconds) {
+            MonitoredApp app = edit().get(packageName);
+            if (app != null && app.getDelaySeconds() != delaySeconds) {
+                MonitoredApp changed = copyOf(app);
+                changed.setDelaySeconds(delaySeconds);
+                apps.put(packageName, changed);
+                modified = true;
+            }
+        }
+
+        @Override
+        public void setEnabled(String packageName, boolean enabled) {
+            MonitoredApp app = edit().get(packageName);
+            if (app != null && app.isEnabled() != enabled) {
+                MonitoredApp changed = copyOf(app);
+                changed.setEnabled(enabled);
+                apps.put(packageName, changed);
+                modified = true;
             }
         }
-        return false;
+
+        @Override
+        public void setAll(List<MonitoredApp> list) {
+            apps = new LinkedHashMap<>(list.size() * 2);
+            for (MonitoredApp app : list) {
+                apps.put(app.getPackageName(), copyOf(app));
+            }
+            modified = true;
+        }
+
+        private Map<String, MonitoredApp> edit() {
+            if (apps == null) {
+                apps = new LinkedHashMap<>(baseApps.size() * 2);
+                for (MonitoredApp app : baseApps) {
+                    apps.put(app.getPackageName(), app);
+                }
+            }
+            return apps;
+        }
+
+        List<MonitoredApp> result() {
+            return new ArrayList<>(edit().values());
+        }
     }
-}
 
+    private static final class Snapshot {
+        final long version;
+        final List<MonitoredApp> apps;
+        final Map<String, MonitoredApp> byPackage;
+        // False if derived from a store that failed to load
+        final boolean persistable;
+
+        Snapshot(long version, List<MonitoredApp> apps, boolean persistable) {
+            this.version = version;
+            this.persistable = persistable;
+            this.apps = Collections.unmodifiableList(apps);
+            Map<String, MonitoredApp> index = new HashMap<>(apps.size() * 2);
+            for (MonitoredApp app : apps) {
+                index.put(app.getPackageName(), app);
+            }
+            this.byPackage = index;
+        }
+    }
+}
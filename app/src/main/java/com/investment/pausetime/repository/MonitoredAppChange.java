@@ -0,0 +1,80 @@
+package com.investment.pausetime.repository;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One difference between two repository snapshots. A single app can produce
+ * both a {@link Type#DELAY_CHANGED} and an {@link Type#ENABLED_CHANGED}.
+ */
+public final class MonitoredAppChange {
+
+    public enum Type {
+        ADDED,
+        REMOVED,
+        DELAY_CHANGED,
+        ENABLED_CHANGED
+    }
+
+    private final Type type;
+    private final MonitoredApp app;
+    private final MonitoredApp previous;
+
+    MonitoredAppChange(Type type, MonitoredApp app, MonitoredApp previous) {
+        this.type = type;
+        this.app = app;
+        this.previous = previous;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** The app as it is now, or as it was for {@link Type#REMOVED}. Read-only. */
+    public MonitoredApp getApp() {
+        return app;
+    }
+
+    /** The app before the change, null for {@link Type#ADDED}. Read-only. */
+    public MonitoredApp getPrevious() {
+        return previous;
+    }
+
+    public String getPackageName() {
+        return app.getPackageName();
+    }
+
+    /** Changes turning {@code before} into {@code after}, in the order of {@code after}, removals last. */
+    static List<MonitoredAppChange> diff(Map<String, MonitoredApp> before, List<MonitoredApp> after,
+                                         Map<String, MonitoredApp> afterByPackage) {
+        List<MonitoredAppChange> changes = new ArrayList<>();
+        for (MonitoredApp app : after) {
+            MonitoredApp old = before.get(app.getPackageName());
+            if (old == null) {
+                changes.add(new MonitoredAppChange(Type.ADDED, app, null));
+                continue;
+            }
+            if (old.getDelaySeconds() != app.getDelaySeconds()) {
+                changes.add(new MonitoredAppChange(Type.DELAY_CHANGED, app, old));
+            }
+            if (old.isEnabled() != app.isEnabled()) {
+                changes.add(new MonitoredAppChange(Type.ENABLED_CHANGED, app, old));
+            }
+        }
+        for (MonitoredApp old : before.values()) {
+            if (!afterByPackage.containsKey(old.getPackageName())) {
+                changes.add(new MonitoredAppChange(Type.REMOVED, old, old));
+            }
+        }
+        return changes.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(changes);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + app.getPackageName();
+    }
+}
@@ -0,0 +1,71 @@
+package com.investment.pausetime.repository;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Binary file holding the monitored-app configuration, framed by
+ * {@link RecordFile}.
+ *
+ * <pre>
+ * record : UTF packageName, UTF appName, int delaySeconds, byte flags
+ * </pre>
+ */
+public class MonitoredAppStore {
+    static final int MAGIC = 0x50544d41; // "PTMA"
+    static final int VERSION = 1;
+
+    private static final int FLAG_ENABLED = 1;
+
+    private static final RecordFile<MonitoredApp> FORMAT = new RecordFile<>(
+            MAGIC, VERSION, "config", new RecordFile.Codec<MonitoredApp>() {
+                @Override
+                public void write(MonitoredApp app, DataOutputStream out) throws IOException {
+                    out.writeUTF(app.getPackageName());
+                    out.writeUTF(app.getAppName() != null ? app.getAppName() : "");
+                    out.writeInt(app.getDelaySeconds());
+                    out.writeByte(app.isEnabled() ? FLAG_ENABLED : 0);
+                }
+
+                @Override
+                public MonitoredApp read(DataInputStream in, int version) throws IOException {
+                    String packageName = in.readUTF();
+                    String appName = in.readUTF();
+                    int delaySeconds = in.readInt();
+                    int flags = in.readByte();
+                    return new MonitoredApp(packageName, appName, delaySeconds,
+                            (flags & FLAG_ENABLED) != 0);
+                }
+            });
+
+    private final File file;
+
+    public MonitoredAppStore(File file) {
+        this.file = file;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    public List<MonitoredApp> load() throws IOException {
+        return FORMAT.load(file);
+    }
+
+    public void save(List<MonitoredApp> apps) throws IOException {
+        FORMAT.save(file, apps);
+    }
+
+    static byte[] encode(List<MonitoredApp> apps) throws IOException {
+        return FORMAT.encode(apps);
+    }
+
+    static List<MonitoredApp> decode(byte[] bytes) throws IOException {
+        return FORMAT.decode(bytes);
+    }
+}
@@ -0,0 +1,110 @@
+package com.investment.pausetime.repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Switches for how the pause overlay is produced. The accessibility overlay
+ * mode is a user setting on the settings screen; the others are only on the
+ * debug screen, which is hidden in release builds, for comparing the
+ * alternatives and for diagnostics.
+ */
+public class OverlaySettings {
+    private static final String PREFS_NAME = "ReclaimPrefs";
+    private static final String KEY_WARM_OVERLAY = "warm_overlay";
+    private static final String KEY_ACCESSIBILITY_OVERLAY = "accessibility_overlay";
+    private static final String KEY_LEGACY_WAVE_RENDERER = "legacy_wave_renderer";
+    private static final String KEY_REDUCED_POWER = "reduced_power_overlay";
+    private static final String KEY_EVENT_TRACE = "event_trace";
+
+    private final SharedPreferences sharedPreferences;
+
+    public OverlaySettings(Context context) {
+        this.sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Keep the overlay service and its inflated view alive between pauses. */
+    public boolean isWarmOverlayEnabled() {
+        return sharedPreferences.getBoolean(KEY_WARM_OVERLAY, true);
+    }
+
+    public void setWarmOverlayEnabled(boolean enabled) {
+        sharedPreferences.edit()
+                .putBoolean(KEY_WARM_OVERLAY, enabled)
+                .apply();
+    }
+
+    /**
+     * Draw the pause screen from the accessibility service instead of starting
+     * OverlayService. Does not need the draw-over-other-apps permission.
+     */
+    public boolean isAccessibilityOverlayEnabled() {
+        return sharedPreferences.getBoolean(KEY_ACCESSIBILITY_OVERLAY, false);
+    }
+
+    public void setAccessibilityOverlayEnabled(boolean enabled) {
+        sharedPreferences.edit()
+                .putBoolean(KEY_ACCESSIBILITY_OVERLAY, enabled)
+                .apply();
+    }
+
+    /** Animate the wave by resizing a view every frame, as before the custom wave view. */
+    public boolean isLegacyWaveRendererEnabled() {
+        return sharedPreferences.getBoolean(KEY_LEGACY_WAVE_RENDERER, false);
+    }
+
+    public void setLegacyWaveRendererEnabled(boolean enabled) {
+        sharedPreferences.edit()
+                .putBoolean(KEY_LEGACY_WAVE_RENDERER, enabled)
+                .apply();
+    }
+
+    /**
+     * Render the overlay at a low frame rate, and step it instead of animating
+     * while battery saver is on or the device is throttled.
+     */
+    public boolean isReducedPowerEnabled() {
+        return sharedPreferences.getBoolean(KEY_REDUCED_POWER, false);
+    }
+
+    public void setReducedPowerEnabled(boolean enabled) {
+        sharedPreferences.edit()
+                .putBoolean(KEY_REDUCED_POWER, enabled)
+                .apply();
+    }
+
+    /**
+     * Record the accessibility events the monitoring service handles, and its
+     * decisions, to a file for offline replay.
+     */
+    public boolean isEventTraceEnabled() {
+        return sharedPreferences.getBoolean(KEY_EVENT_TRACE, false);
+    }
+
+    public void setEventTraceEnabled(boolean enabled) {
+        sharedPreferences.edit()
+                .putBoolean(KEY_EVENT_TRACE, enabled)
+                .apply();
+    }
+
+    /**
+     * Whether a key passed to a change listener may have changed
+     * {@link #isEventTraceEnabled()}. A null key means the file was cleared.
+     */
+    public static boolean isEventTraceKey(String key) {
+        return key == null || KEY_EVENT_TRACE.equals(key);
+    }
+
+    /**
+     * Called on the main thread after any switch changes, and for other keys
+     * kept in the same file. SharedPreferences only keeps a weak reference to
+     * the listener, the caller has to hold it.
+     */
+    public void registerOnChangeListener(SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        sharedPreferences.registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    public void unregisterOnChangeListener(SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        sharedPreferences.unregisterOnSharedPreferenceChangeListener(listener);
+    }
+}
@@ -0,0 +1,129 @@
+package com.investment.pausetime.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Framing shared by the binary stores.
+ *
+ * <pre>
+ * header : int magic, int version, int recordCount
+ * record : int length, then length bytes written by the {@link Codec}
+ * </pre>
+ *
+ * A newer version may only append fields to a record. Readers accept any
+ * version, read the fields they know and skip the rest of each record, so a
+ * file written by a later app version still loads after a downgrade. Saves go
+ * to a temp file which is synced and renamed over the previous one, so a crash
+ * never leaves a half-written file behind.
+ */
+final class RecordFile<T> {
+
+    interface Codec<T> {
+        void write(T record, DataOutputStream out) throws IOException;
+
+        /** Reads the fields known to this version; {@code version} is the file's. */
+        T read(DataInputStream in, int version) throws IOException;
+    }
+
+    private final int magic;
+    private final int version;
+    private final String kind;
+    private final Codec<T> codec;
+
+    RecordFile(int magic, int version, String kind, Codec<T> codec) {
+        this.magic = magic;
+        this.version = version;
+        this.kind = kind;
+        this.codec = codec;
+    }
+
+    List<T> load(File file) throws IOException {
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    throw new EOFException("Truncated " + kind + " file " + file);
+                }
+                read += n;
+            }
+        }
+        return decode(bytes);
+    }
+
+    void save(File file, Collection<? extends T> records) throws IOException {
+        byte[] bytes = encode(records);
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not replace " + kind + " file " + file);
+        }
+    }
+
+    byte[] encode(Collection<? extends T> records) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 + records.size() * 64);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeInt(records.size());
+
+        ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+        DataOutputStream record = new DataOutputStream(recordBuffer);
+        for (T value : records) {
+            recordBuffer.reset();
+            codec.write(value, record);
+            out.writeInt(recordBuffer.size());
+            recordBuffer.writeTo(out);
+        }
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    List<T> decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != magic) {
+            throw new IOException("Not a " + kind + " file");
+        }
+        int fileVersion = in.readInt();
+        if (fileVersion < 1) {
+            throw new IOException("Unsupported " + kind + " version " + fileVersion);
+        }
+        int count = in.readInt();
+        List<T> records = new ArrayList<>(Math.min(count, bytes.length / 4));
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            int start = in.available();
+            if (length < 0 || length > start) {
+                throw new IOException("Corrupt record " + i);
+            }
+            T value = codec.read(in, fileVersion);
+            // Skip fields appended by newer versions
+            int consumed = start - in.available();
+            if (consumed > length) {
+                throw new IOException("Corrupt record " + i);
+            }
+            in.skipBytes(length - consumed);
+            records.add(value);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,76 @@
+package com.investment.pausetime.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.SystemClock;
+import android.view.WindowManager;
+
+/**
+ * Draws the pause screen straight from {@link AppMonitoringService} as a
+ * TYPE_ACCESSIBILITY_OVERLAY window. Needs no second service and no
+ * SYSTEM_ALERT_WINDOW, but only works while the accessibility service is
+ * connected.
+ */
+class AccessibilityOverlayController implements OverlayController, PauseOverlay.Listener {
+
+    private final PauseOverlay overlay;
+    private final UsageLog usageLog;
+
+    AccessibilityOverlayController(AccessibilityService service, UsageLog usageLog) {
+        this.usageLog = usageLog;
+        // The window token comes from the service context, so it must not be the application context
+        overlay = new PauseOverlay(service,
+                WindowManager.LayoutParams.TYPE_ACCESSIBILITY_OVERLAY, this);
+    }
+
+    void setWarm(boolean warm) {
+        overlay.setWarm(warm);
+    }
+
+    void setLegacyRenderer(boolean legacyRenderer) {
+        overlay.setLegacyRenderer(legacyRenderer);
+    }
+
+    void setReducedPower(boolean reducedPower) {
+        overlay.setReducedPower(reducedPower);
+    }
+
+    void prepare() {
+        overlay.prepare();
+    }
+
+    /** Takes the overlay down without ending a running pause, see {@link PauseOverlay#suspend()}. */
+    void release() {
+        overlay.suspend();
+        overlay.release();
+    }
+
+    void onConfigurationChanged() {
+        overlay.onConfigurationChanged();
+    }
+
+    @Override
+    public void show(String packageName, String appName, int delaySeconds, PauseTrace trace) {
+        if (trace != null) {
+            // No service start on this path, the show call is the start
+            trace.dispatchTime = SystemClock.uptimeMillis();
+            trace.startCommandTime = trace.dispatchTime;
+        }
+        overlay.show(packageName, appName, delaySeconds, trace);
+    }
+
+    @Override
+    public void dismiss() {
+        overlay.dismiss();
+    }
+
+    @Override
+    public boolean isShowing() {
+        return overlay.isShowing();
+    }
+
+    @Override
+    public void onPauseFinished(String packageName, long durationMillis) {
+        // Nothing to stop, the view stays with the accessibility service
+        usageLog.append(UsageLog.TYPE_PAUSE_COMPLETED, packageName, durationMillis);
+    }
+}
@@ -1,180 +1,456 @@
 package com.investment.pausetime.service;
 
 import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.content.res.Configuration;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 
 import com.investment.pausetime.model.MonitoredApp;
+import com.investment.pausetime.repository.AppCatalog;
 import com.investment.pausetime.repository.AppRepository;
+import com.investment.pausetime.repository.MonitoredAppChange;
+import com.investment.pausetime.repository.OverlaySettings;
+import com.investment.pausetime.utils.IconCache;
 
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
+/**
+ * Accessibility service that detects launches of monitored apps.
+ *
+ * The accessibility callback only copies the package name into a coalescing
+ * {@link WindowEventQueue}. Decisions, repository lookups and timers all run
+ * on a dedicated event thread; only the final show or dismiss is posted back
+ * to the main thread.
+ *
+ * To avoid being woken for every app on the device, the service narrows its
+ * package filter to the monitored apps plus the home launchers while the user
+ * is in an unmonitored app. While a monitored app is in the foreground, or an
+ * overlay is pending or showing, it listens to all packages so leaving the app
+ * is still noticed.
+ *
+ * The steady-state event path allocates nothing: package names stay the
+ * event's own CharSequences until {@link OverlayDecisionEngine} maps them to
+ * interned IDs, and debug logging only runs in debuggable builds.
+ *
+ * Opens of monitored apps, shown pauses and pauses the user walked out of
+ * are appended to the {@link UsageLog}.
+ *
+ * The pause screen is either drawn by this service as an accessibility
+ * overlay or by the bound {@link OverlayService}, see {@link OverlaySettings}.
+ */
 public class AppMonitoringService extends AccessibilityService {
 
     private static final String TAG = "AppMonitoringService";
-    private static final long DEBOUNCE_DELAY = 1000; // 1 second debounce for complex apps
-    private static final long COOLDOWN_PERIOD = 3000; // 3 second cooldown between overlay shows
-    
+    private static final int EVENT_QUEUE_CAPACITY = 16;
+
     private AppRepository repository;
-    private String currentPackageName = "";
-    private String lastMonitoredPackage = ""; // Track the last app we showed overlay for
-    private Set<String> activeOverlays = new HashSet<>();
-    private Set<String> pendingOverlays = new HashSet<>(); // Track overlays scheduled but not yet shown
-    private Set<String> recentlyShownOverlays = new HashSet<>(); // Track apps that recently showed overlay
-    private Handler handler = new Handler();
-    private Runnable pendingShowOverlayRunnable;
-    private long lastEventTime = 0;
-    private String lastEventPackage = "";
+    private UsageLog usageLog;
+    // Event thread
+    private OverlayStateMachine stateMachine;
+    private OverlaySettings overlaySettings;
+    private BoundOverlayController serviceOverlayController;
+    private AccessibilityOverlayController accessibilityOverlayController;
+    // Main thread
+    private OverlayController overlayController;
+    private final WindowEventQueue eventQueue = new WindowEventQueue(EVENT_QUEUE_CAPACITY);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread eventThread;
+    private Handler eventHandler;
+    // Only touched on the event thread
+    private Set<String> monitoredPackages;
+    private Set<String> launcherPackages;
+    private String[] narrowPackageFilter;
+    private boolean filterNarrowed;
+    private boolean serviceConnected;
+    private EventTraceRecorder traceRecorder;
+    // The overlay last shown, to tell leaving during the pause from leaving after it
+    private String shownPackage;
+    private long shownAt;
+    private long shownDuration;
+    // Set on the event thread, read by the accessibility callback
+    private volatile boolean tracing;
+    // Set before the event thread starts
+    private boolean debugLogging;
+    // Event thread, the queue copies each event into it
+    private final WindowEventQueue.Event polledEvent = new WindowEventQueue.Event();
+
+    private final Runnable drainEventsRunnable = this::drainEvents;
+    // Event thread. All service timers, behind a single pending Handler callback.
+    private final Runnable timerWakeupRunnable = () -> this.timerQueue.runDue(SystemClock.uptimeMillis());
+    private final TimerQueue timerQueue = new TimerQueue(new TimerQueue.Wakeup() {
+        @Override
+        public void wakeAt(long uptimeMillis) {
+            eventHandler.removeCallbacks(timerWakeupRunnable);
+            eventHandler.postAtTime(timerWakeupRunnable, uptimeMillis);
+        }
+
+        @Override
+        public void cancelWakeup() {
+            eventHandler.removeCallbacks(timerWakeupRunnable);
+        }
+    });
+    private final AppRepository.OnMonitoredAppsChangedListener monitoredAppsChangedListener =
+            (apps, changes) -> {
+                if (!changes.isEmpty()) {
+                    eventHandler.post(() -> {
+                        stateMachine.invalidateMonitoredApps();
+                        traceRecorder.recordChanges(apps, changes);
+                        applyMonitoredAppChanges(changes);
+                    });
+                }
+            };
+    // Main thread. Held here, SharedPreferences only keeps a weak reference.
+    // Settings rarely change, the event thread reads them only when they do.
+    // The file also holds the monitored-app version, bumped on every edit.
+    private final SharedPreferences.OnSharedPreferenceChangeListener settingsChangeListener =
+            (prefs, key) -> {
+                if (OverlaySettings.isEventTraceKey(key)) {
+                    eventHandler.post(this::updateTraceRecorder);
+                }
+            };
+    // Called on the event thread
+    private final OverlayStateMachine.Listener stateMachineListener = new OverlayStateMachine.Listener() {
+        @Override
+        public long onShowOverlay(MonitoredApp app, long eventTime, long decisionTime) {
+            if (debugLogging) {
+                Log.d(TAG, "Showing overlay for: " + app.getAppName());
+            }
+            shownPackage = app.getPackageName();
+            shownAt = SystemClock.uptimeMillis();
+            // Less than the delay if the overlay resumes a suspended pause
+            shownDuration = PauseOverlay.getPauseDuration(shownPackage, app.getDelaySeconds() * 1000L, shownAt);
+            usageLog.append(UsageLog.TYPE_PAUSE_SHOWN, shownPackage, shownDuration);
+            mainHandler.post(() -> showOverlay(app, eventTime, decisionTime));
+            return shownDuration;
+        }
+
+        @Override
+        public void onDismissOverlay(String packageName) {
+            if (debugLogging) {
+                Log.d(TAG, "Dismissing active overlay for: " + packageName);
+            }
+            // The overlay state outlives the countdown, leaving then is not giving up
+            long elapsed = SystemClock.uptimeMillis() - shownAt;
+            if (packageName.equals(shownPackage) && elapsed < shownDuration) {
+                usageLog.append(UsageLog.TYPE_PAUSE_ABANDONED, packageName, elapsed);
+            }
+            shownPackage = null;
+            mainHandler.post(AppMonitoringService.this::dismissOverlay);
+        }
+
+        @Override
+        public void onShowDropped(String packageName, long eventTime) {
+            if (debugLogging) {
+                Log.d(TAG, "Not showing overlay for: " + packageName + ", user left or it was cancelled");
+            }
+            PauseTrace.endAsyncSection(eventTime);
+        }
+
+        @Override
+        public void onStateChanged() {
+            updatePackageFilter();
+        }
+    };
 
     @Override
     public void onCreate() {
         super.onCreate();
-        repository = new AppRepository(this);
+        repository = AppRepository.getInstance(this);
+        usageLog = UsageLog.getInstance(this);
+        debugLogging = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        eventThread = new HandlerThread("AppMonitoringEvents", Process.THREAD_PRIORITY_BACKGROUND);
+        eventThread.start();
+        eventHandler = new Handler(eventThread.getLooper());
+        stateMachine = new OverlayStateMachine(
+                new OverlayDecisionEngine(getPackageName(), repository::getMonitoredApp),
+                SystemClock::uptimeMillis, timerQueue, stateMachineListener);
+        repository.addOnMonitoredAppsChangedListener(monitoredAppsChangedListener);
+        overlaySettings = new OverlaySettings(this);
+        overlaySettings.registerOnChangeListener(settingsChangeListener);
+        traceRecorder = new EventTraceRecorder(this);
+        // This service keeps the process alive, so the catalog follows package changes here
+        AppCatalog.getInstance(this).startWatchingPackages();
+        serviceOverlayController = new BoundOverlayController(this);
+        accessibilityOverlayController = new AccessibilityOverlayController(this, usageLog);
+        selectOverlayController();
         Log.d(TAG, "Service created");
     }
 
+    @Override
+    protected void onServiceConnected() {
+        super.onServiceConnected();
+        eventHandler.post(() -> {
+            serviceConnected = true;
+            updateTraceRecorder();
+            rebuildPackageFilter();
+        });
+    }
+
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
-            if (event.getPackageName() != null) {
-                String packageName = event.getPackageName().toString();
-                
-                // Debounce rapid events from the same package (like YouTube with multiple windows)
-                long currentTime = System.currentTimeMillis();
-                if (packageName.equals(lastEventPackage) && 
-                    (currentTime - lastEventTime) < DEBOUNCE_DELAY) {
-                    Log.d(TAG, "Ignoring rapid duplicate event for: " + packageName);
-                    return;
-                }
-                lastEventTime = currentTime;
-                lastEventPackage = packageName;
-                
+        if (event.getEventType() != AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED ||
+                event.getPackageName() == null) {
+            return;
+        }
+        MonitoringStats.onEventReceived();
+        // The event is recycled after this callback, the queue keeps what the event thread needs
+        if (eventQueue.offer(event.getPackageName(), tracing ? event.getClassName() : null,
+                event.getWindowId(), event.getEventTime())) {
+            eventHandler.post(drainEventsRunnable);
+        }
+    }
+
+    // Event thread
+    private void drainEvents() {
+        while (eventQueue.poll(polledEvent)) {
+            Trace.beginSection("AppMonitoring.processEvent");
+            try {
+                processEvent(polledEvent);
+            } finally {
+                Trace.endSection();
+            }
+        }
+        polledEvent.clear();
+        traceRecorder.flush();
+        updatePackageFilter();
+    }
+
+    // Event thread, on connecting and after a settings change
+    private void updateTraceRecorder() {
+        boolean enabled = overlaySettings.isEventTraceEnabled();
+        if (enabled && !traceRecorder.isRecording()) {
+            traceRecorder.start(repository.getMonitoredAppsSnapshot(), SystemClock.uptimeMillis());
+        } else if (!enabled && traceRecorder.isRecording()) {
+            traceRecorder.stop();
+        }
+        tracing = traceRecorder.isRecording();
+    }
+
+    // Event thread
+    private void processEvent(WindowEventQueue.Event event) {
+        long eventTime = event.eventTime;
+        OverlayDecisionEngine.Decision decision =
+                stateMachine.onWindowStateChanged(event.packageName, eventTime);
+        // Interned by the engine, the same instance for every event of the package
+        String packageName = decision.getPackageName();
+        if (tracing) {
+            traceRecorder.recordEvent(eventTime, packageName,
+                    event.className != null ? event.className.toString() : null,
+                    event.windowId, decision);
+        }
+
+        OverlayDecisionEngine.Reason reason = decision.getReason();
+        if (debugLogging) {
+            logDecision(reason, packageName);
+        }
+        if (reason == OverlayDecisionEngine.Reason.DEBOUNCED || reason == OverlayDecisionEngine.Reason.EXCLUDED) {
+            return;
+        }
+        if (decision.isAppOpened()) {
+            usageLog.append(UsageLog.TYPE_APP_OPENED, packageName, 0);
+        }
+
+        if (decision.getDismissPackage() != null || decision.getCancelPackage() != null ||
+                decision.getScheduledApp() != null) {
+            MonitoringStats.onEventActedOn();
+        }
+
+        MonitoredApp monitoredApp = decision.getScheduledApp();
+        if (monitoredApp != null) {
+            if (debugLogging) {
+                Log.d(TAG, "Scheduling overlay for: " + monitoredApp.getAppName());
+            }
+            PauseTrace.beginAsyncSection(eventTime);
+            // Usually already in memory, otherwise load it during the show delay
+            IconCache iconCache = IconCache.getInstance(this);
+            if (iconCache.getCached(monitoredApp.getPackageName()) == null) {
+                iconCache.prefetch(monitoredApp.getPackageName());
+            }
+        }
+    }
+
+    // Event thread, debuggable builds only
+    private void logDecision(OverlayDecisionEngine.Reason reason, String packageName) {
+        switch (reason) {
+            case DEBOUNCED:
+                Log.d(TAG, "Ignoring rapid duplicate event for: " + packageName);
+                break;
+            case EXCLUDED:
+                break;
+            case ALREADY_ACTIVE:
+                Log.d(TAG, "Overlay already active for: " + packageName + ", skipping");
+                break;
+            case ALREADY_PENDING:
+                Log.d(TAG, "Overlay already pending for: " + packageName + ", skipping");
+                break;
+            case IN_COOLDOWN:
+                Log.d(TAG, "Overlay recently shown for: " + packageName + ", in cooldown period, skipping");
+                break;
+            default:
                 Log.d(TAG, "App opened: " + packageName);
-                
-                // Don't block our own app or system UI
-                if (packageName.equals(getPackageName()) || 
-                    packageName.equals("com.android.systemui") ||
-                    packageName.equals("com.google.android.apps.nexuslauncher") ||
-                    packageName.equals("com.android.launcher3")) {
-                    return;
-                }
-                
-                // Check if user is switching away from a monitored app
-                if (!packageName.equals(lastMonitoredPackage) && 
-                    !lastMonitoredPackage.isEmpty()) {
-                    
-                    Log.d(TAG, "Switching from " + lastMonitoredPackage + " to " + packageName);
-                    
-                    // Check if there's an active overlay to dismiss
-                    if (activeOverlays.contains(lastMonitoredPackage)) {
-                        Log.d(TAG, "Dismissing active overlay for: " + lastMonitoredPackage);
-                        Intent dismissIntent = new Intent(this, OverlayService.class);
-                        dismissIntent.setAction(OverlayService.ACTION_DISMISS);
-                        startService(dismissIntent);
-                        activeOverlays.remove(lastMonitoredPackage);
-                        
-                        // Remove from cooldown so it can show again when reopened
-                        recentlyShownOverlays.remove(lastMonitoredPackage);
-                    }
-                    
-                    // Check if there's a pending overlay to cancel
-                    if (pendingOverlays.contains(lastMonitoredPackage)) {
-                        Log.d(TAG, "Canceling pending overlay for: " + lastMonitoredPackage);
-                        if (pendingShowOverlayRunnable != null) {
-                            handler.removeCallbacks(pendingShowOverlayRunnable);
-                            pendingShowOverlayRunnable = null;
-                        }
-                        pendingOverlays.remove(lastMonitoredPackage);
-                        
-                        // Remove from cooldown
-                        recentlyShownOverlays.remove(lastMonitoredPackage);
-                    }
-                    
-                    // Clear last monitored package
-                    lastMonitoredPackage = "";
-                }
-                
-                // Only trigger if we're switching to a different app
-                if (!packageName.equals(currentPackageName)) {
-                    currentPackageName = packageName;
-                    
-                    // Check if this app is monitored
-                    MonitoredApp monitoredApp = repository.getMonitoredApp(packageName);
-                    if (monitoredApp != null && monitoredApp.isEnabled()) {
-                        
-                        // Don't show overlay if already showing or pending for this package
-                        if (activeOverlays.contains(packageName)) {
-                            Log.d(TAG, "Overlay already active for: " + packageName + ", skipping");
-                            return;
-                        }
-                        
-                        if (pendingOverlays.contains(packageName)) {
-                            Log.d(TAG, "Overlay already pending for: " + packageName + ", skipping");
-                            return;
-                        }
-                        
-                        // Don't show overlay if recently shown (cooldown period)
-                        if (recentlyShownOverlays.contains(packageName)) {
-                            Log.d(TAG, "Overlay recently shown for: " + packageName + ", in cooldown period, skipping");
-                            return;
+                break;
+        }
+    }
+
+    // Event thread
+    private void rebuildPackageFilter() {
+        Set<String> packages = new LinkedHashSet<>();
+        IconCache iconCache = IconCache.getInstance(this);
+        for (MonitoredApp app : repository.getMonitoredAppsSnapshot()) {
+            if (app.isEnabled()) {
+                packages.add(app.getPackageName());
+                // So the pause screen never waits for an icon
+                iconCache.prefetch(app.getPackageName());
+            }
+        }
+        Set<String> launchers = new LinkedHashSet<>();
+        Intent homeIntent = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_HOME);
+        for (ResolveInfo launcher : getPackageManager().queryIntentActivities(
+                homeIntent, PackageManager.MATCH_ALL)) {
+            launchers.add(launcher.activityInfo.packageName);
+        }
+        monitoredPackages = packages;
+        launcherPackages = launchers;
+        publishNarrowPackageFilter();
+    }
+
+    /**
+     * Applies repository changes to the filter without re-reading the apps or
+     * querying the launchers again. Delay changes don't affect it. Event thread.
+     */
+    private void applyMonitoredAppChanges(List<MonitoredAppChange> changes) {
+        if (monitoredPackages == null) {
+            // Not connected yet, the first rebuild reads the current apps
+            return;
+        }
+        boolean changed = false;
+        for (MonitoredAppChange change : changes) {
+            String packageName = change.getPackageName();
+            switch (change.getType()) {
+                case ADDED:
+                case ENABLED_CHANGED:
+                    if (change.getApp().isEnabled()) {
+                        if (monitoredPackages.add(packageName)) {
+                            changed = true;
+                            IconCache.getInstance(this).prefetch(packageName);
                         }
-                        
-                        Log.d(TAG, "Scheduling overlay for: " + monitoredApp.getAppName());
-                        
-                        // Remember this package and mark as pending
-                        lastMonitoredPackage = packageName;
-                        pendingOverlays.add(packageName);
-                        
-                        // Small delay to ensure the app window is ready
-                        final String finalPackageName = packageName;
-                        pendingShowOverlayRunnable = new Runnable() {
-                            @Override
-                            public void run() {
-                                // Only show if user is still in the app
-                                if (finalPackageName.equals(currentPackageName)) {
-                                    Log.d(TAG, "Showing overlay for: " + monitoredApp.getAppName());
-                                    
-                                    // Move from pending to active
-                                    pendingOverlays.remove(finalPackageName);
-                                    activeOverlays.add(finalPackageName);
-                                    recentlyShownOverlays.add(finalPackageName);
-                                    
-                                    Intent intent = new Intent(AppMonitoringService.this, OverlayService.class);
-                                    intent.putExtra("packageName", finalPackageName);
-                                    intent.putExtra("appName", monitoredApp.getAppName());
-                                    intent.putExtra("delaySeconds", monitoredApp.getDelaySeconds());
-                                    startService(intent);
-                                    
-                                    // Schedule cleanup after delay completes
-                                    handler.postDelayed(() -> {
-                                        Log.d(TAG, "Cleaning up overlay state for: " + finalPackageName);
-                                        activeOverlays.remove(finalPackageName);
-                                        if (finalPackageName.equals(lastMonitoredPackage)) {
-                                            lastMonitoredPackage = "";
-                                        }
-                                    }, (monitoredApp.getDelaySeconds() + 2) * 1000L);
-                                    
-                                    // Remove from cooldown after cooldown period
-                                    handler.postDelayed(() -> {
-                                        Log.d(TAG, "Cooldown period ended for: " + finalPackageName);
-                                        recentlyShownOverlays.remove(finalPackageName);
-                                    }, COOLDOWN_PERIOD);
-                                } else {
-                                    Log.d(TAG, "User left app before overlay could show, not showing overlay");
-                                    pendingOverlays.remove(finalPackageName);
-                                }
-                                pendingShowOverlayRunnable = null;
-                            }
-                        };
-                        
-                        handler.postDelayed(pendingShowOverlayRunnable, 500);
+                    } else {
+                        changed |= monitoredPackages.remove(packageName);
                     }
-                }
+                    break;
+                case REMOVED:
+                    changed |= monitoredPackages.remove(packageName);
+                    break;
+                default:
+                    break;
             }
         }
+        if (changed) {
+            publishNarrowPackageFilter();
+        }
+    }
+
+    // Event thread
+    private void publishNarrowPackageFilter() {
+        Set<String> packages = new LinkedHashSet<>(monitoredPackages);
+        packages.addAll(launcherPackages);
+        narrowPackageFilter = packages.toArray(new String[0]);
+        if (debugLogging) {
+            Log.d(TAG, "Package filter rebuilt: " + Arrays.toString(narrowPackageFilter));
+        }
+        // Force the next update to push the new list
+        filterNarrowed = false;
+        updatePackageFilter();
+    }
+
+    // Event thread
+    private void updatePackageFilter() {
+        if (!serviceConnected || narrowPackageFilter == null) {
+            return;
+        }
+        boolean narrow = !stateMachine.isWatchingForExit();
+        if (narrow == filterNarrowed) {
+            return;
+        }
+        filterNarrowed = narrow;
+        // Applied here rather than posted to the main thread: the filter must be
+        // wide before the show delay runs out, or the event for leaving the app
+        // is filtered out and the overlay comes up over whatever replaced it
+        applyPackageFilter(narrow ? narrowPackageFilter : null);
+    }
+
+    // Event thread, the only caller of setServiceInfo so updates stay in order
+    private void applyPackageFilter(String[] packageNames) {
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info == null) {
+            return;
+        }
+        info.packageNames = packageNames;
+        setServiceInfo(info);
+        MonitoringStats.onFilterUpdated();
+        if (debugLogging) {
+            Log.d(TAG, (packageNames != null
+                    ? "Listening to " + packageNames.length + " packages"
+                    : "Listening to all packages") + " (" + MonitoringStats.summary() + ")");
+        }
+    }
+
+    // Main thread
+    private void selectOverlayController() {
+        if (overlayController != null && overlayController.isShowing()) {
+            // Switch once the current pause is gone
+            return;
+        }
+        boolean warm = overlaySettings.isWarmOverlayEnabled();
+        if (overlaySettings.isAccessibilityOverlayEnabled()) {
+            serviceOverlayController.unbind();
+            accessibilityOverlayController.setWarm(warm);
+            accessibilityOverlayController.setLegacyRenderer(
+                    overlaySettings.isLegacyWaveRendererEnabled());
+            accessibilityOverlayController.setReducedPower(overlaySettings.isReducedPowerEnabled());
+            accessibilityOverlayController.prepare();
+            overlayController = accessibilityOverlayController;
+        } else {
+            accessibilityOverlayController.release();
+            serviceOverlayController.bind();
+            overlayController = serviceOverlayController;
+        }
+    }
+
+    // Main thread
+    private void showOverlay(MonitoredApp monitoredApp, long eventTime, long decisionTime) {
+        selectOverlayController();
+        PauseTrace trace = new PauseTrace();
+        trace.eventTime = eventTime;
+        trace.decisionTime = decisionTime;
+        overlayController.show(monitoredApp.getPackageName(), monitoredApp.getAppName(),
+                monitoredApp.getDelaySeconds(), trace);
+    }
+
+    // Main thread
+    private void dismissOverlay() {
+        overlayController.dismiss();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        accessibilityOverlayController.onConfigurationChanged();
     }
 
     @Override
@@ -185,15 +461,20 @@ public class AppMonitoringService extends AccessibilityService {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (pendingShowOverlayRunnable != null) {
-            handler.removeCallbacks(pendingShowOverlayRunnable);
-            pendingShowOverlayRunnable = null;
-        }
-        handler.removeCallbacksAndMessages(null);
-        activeOverlays.clear();
-        pendingOverlays.clear();
-        recentlyShownOverlays.clear();
-        Log.d(TAG, "Service destroyed");
+        repository.removeOnMonitoredAppsChangedListener(monitoredAppsChangedListener);
+        overlaySettings.unregisterOnChangeListener(settingsChangeListener);
+        eventQueue.clear();
+        mainHandler.removeCallbacksAndMessages(null);
+        eventHandler.removeCallbacksAndMessages(null);
+        eventHandler.post(() -> {
+            timerQueue.clear();
+            traceRecorder.stop();
+        });
+        usageLog.flush();
+        eventThread.quitSafely();
+        serviceOverlayController.unbind();
+        accessibilityOverlayController.release();
+        Log.d(TAG, "Service destroyed (coalesced " + eventQueue.getCoalescedCount() +
+                ", dropped " + eventQueue.getDroppedCount() + " events)");
     }
 }
-
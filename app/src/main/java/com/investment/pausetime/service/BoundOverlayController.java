@@ -0,0 +1,114 @@
+package com.investment.pausetime.service;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Talks to {@link OverlayService} through an in-process binding, so show and
+ * dismiss are plain method calls. Until the binding is up, or if it drops,
+ * commands fall back to startService Intents.
+ */
+class BoundOverlayController implements OverlayController {
+
+    private static final String TAG = "BoundOverlayController";
+
+    private final Context context;
+    private OverlayService service;
+    private boolean bound;
+    // What the Intent fallback last asked for, it has no way to query the service.
+    // The pause finishes on its own by the deadline, and once bound the service answers.
+    private boolean fallbackShowing;
+    private long fallbackDeadline;
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = ((OverlayService.LocalBinder) binder).getService();
+            fallbackShowing = false;
+            Log.d(TAG, "Overlay service bound");
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            service = null;
+            Log.d(TAG, "Overlay service disconnected, using Intent fallback");
+        }
+    };
+
+    BoundOverlayController(Context context) {
+        this.context = context;
+    }
+
+    void bind() {
+        if (!bound) {
+            bound = context.bindService(new Intent(context, OverlayService.class),
+                    connection, Context.BIND_AUTO_CREATE);
+            if (!bound) {
+                Log.w(TAG, "Could not bind overlay service, using Intent fallback");
+            }
+        }
+    }
+
+    void unbind() {
+        if (bound) {
+            context.unbindService(connection);
+            bound = false;
+        }
+        service = null;
+    }
+
+    @Override
+    public void show(String packageName, String appName, int delaySeconds, PauseTrace trace) {
+        if (trace != null) {
+            trace.dispatchTime = SystemClock.uptimeMillis();
+        }
+        if (service != null) {
+            service.show(packageName, appName, delaySeconds, trace);
+            return;
+        }
+        Intent intent = new Intent(context, OverlayService.class);
+        intent.putExtra(OverlayService.EXTRA_PACKAGE_NAME, packageName);
+        intent.putExtra(OverlayService.EXTRA_APP_NAME, appName);
+        intent.putExtra(OverlayService.EXTRA_DELAY_SECONDS, delaySeconds);
+        if (trace != null) {
+            intent.putExtra(OverlayService.EXTRA_EVENT_TIME, trace.eventTime);
+            intent.putExtra(OverlayService.EXTRA_DECISION_TIME, trace.decisionTime);
+            intent.putExtra(OverlayService.EXTRA_DISPATCH_TIME, trace.dispatchTime);
+        }
+        context.startService(intent);
+        fallbackShowing = true;
+        fallbackDeadline = SystemClock.uptimeMillis() + delaySeconds * 1000L;
+    }
+
+    @Override
+    public void dismiss() {
+        if (service != null) {
+            service.dismiss();
+            return;
+        }
+        // Only send the Intent if we started an overlay, so a dismiss never spins up an idle service
+        if (isFallbackShowing()) {
+            Intent dismissIntent = new Intent(context, OverlayService.class);
+            dismissIntent.setAction(OverlayService.ACTION_DISMISS);
+            context.startService(dismissIntent);
+            fallbackShowing = false;
+        }
+    }
+
+    @Override
+    public boolean isShowing() {
+        return service != null ? service.isShowing() : isFallbackShowing();
+    }
+
+    private boolean isFallbackShowing() {
+        if (fallbackShowing && SystemClock.uptimeMillis() >= fallbackDeadline) {
+            fallbackShowing = false;
+        }
+        return fallbackShowing;
+    }
+}
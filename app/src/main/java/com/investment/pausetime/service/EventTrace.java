@@ -0,0 +1,223 @@
+package com.investment.pausetime.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format of recorded accessibility events, written on the
+ * device by {@link EventTraceRecorder} and read back on the JVM to replay a
+ * trace through {@link OverlayStateMachine}.
+ *
+ * A file starts with a header (magic, version, base time) followed by
+ * records. App records carry the monitored-app configuration, written in full
+ * at the start of every file and again for each change, so a file replays on
+ * its own. Event records hold the time as a delta to the previous event, the
+ * package and window class as references into a per-file string table, the
+ * window ID and the decision taken. All integers are variable length.
+ */
+public final class EventTrace {
+
+    static final int MAGIC = 0x50544554; // "PTET"
+    static final int VERSION = 1;
+
+    public static final int KIND_APP = 1;
+    public static final int KIND_EVENT = 2;
+
+    // String references: 0 is null, 1 a new string that follows, n the entry n - 2
+    private static final int REF_NULL = 0;
+    private static final int REF_NEW = 1;
+    private static final int REF_FIRST = 2;
+
+    private static final int REASON_MASK = 0x0F;
+    private static final int FLAG_DISMISS = 0x10;
+    private static final int FLAG_CANCEL = 0x20;
+
+    private static final OverlayDecisionEngine.Reason[] REASONS = OverlayDecisionEngine.Reason.values();
+
+    private EventTrace() {
+    }
+
+    /** Appends records to one trace file. Not thread safe. */
+    public static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private long lastEventTime;
+
+        public Writer(OutputStream out, long baseTime) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+            this.out.writeLong(baseTime);
+            this.lastEventTime = baseTime;
+        }
+
+        /** A disabled or removed app is written with {@code enabled} false. */
+        public void writeApp(String packageName, int delaySeconds, boolean enabled) throws IOException {
+            out.writeByte(KIND_APP);
+            writeString(packageName);
+            writeVarLong(delaySeconds);
+            out.writeBoolean(enabled);
+        }
+
+        public void writeEvent(long eventTime, String packageName, String className, int windowId,
+                               OverlayDecisionEngine.Reason reason, boolean dismissed, boolean cancelled)
+                throws IOException {
+            out.writeByte(KIND_EVENT);
+            writeVarLong(zigZag(eventTime - lastEventTime));
+            lastEventTime = eventTime;
+            writeString(packageName);
+            writeString(className);
+            writeVarLong(zigZag(windowId));
+            out.writeByte(reason.ordinal() | (dismissed ? FLAG_DISMISS : 0) | (cancelled ? FLAG_CANCEL : 0));
+        }
+
+        /** Bytes written so far, including the header. */
+        public int size() {
+            return out.size();
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(REF_NULL);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarLong(REF_FIRST + index);
+                return;
+            }
+            strings.put(value, strings.size());
+            writeVarLong(REF_NEW);
+            out.writeUTF(value);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * Reads records one at a time. {@link #next()} fills in the public fields
+     * of the current record, only those of its {@link #kind} are meaningful.
+     */
+    public static final class Reader {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private long lastEventTime;
+
+        public int kind;
+        public String packageName;
+        // App records
+        public int delaySeconds;
+        public boolean enabled;
+        // Event records
+        public long eventTime;
+        public String className;
+        public int windowId;
+        public OverlayDecisionEngine.Reason reason;
+        public boolean dismissed;
+        public boolean cancelled;
+
+        public Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            if (this.in.readInt() != MAGIC) {
+                throw new IOException("Not an event trace");
+            }
+            int version = this.in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported event trace version " + version);
+            }
+            lastEventTime = this.in.readLong();
+        }
+
+        /** Moves to the next record. Returns false at the end, or at a record cut short by a crash. */
+        public boolean next() throws IOException {
+            int value = in.read();
+            if (value < 0) {
+                return false;
+            }
+            try {
+                kind = value;
+                switch (kind) {
+                    case KIND_APP:
+                        packageName = readString();
+                        delaySeconds = (int) readVarLong();
+                        enabled = in.readBoolean();
+                        return true;
+                    case KIND_EVENT:
+                        eventTime = lastEventTime + unZigZag(readVarLong());
+                        lastEventTime = eventTime;
+                        packageName = readString();
+                        className = readString();
+                        windowId = (int) unZigZag(readVarLong());
+                        int decision = in.readUnsignedByte();
+                        reason = REASONS[decision & REASON_MASK];
+                        dismissed = (decision & FLAG_DISMISS) != 0;
+                        cancelled = (decision & FLAG_CANCEL) != 0;
+                        return true;
+                    default:
+                        throw new IOException("Unknown record kind " + kind);
+                }
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private String readString() throws IOException {
+            int ref = (int) readVarLong();
+            if (ref == REF_NULL) {
+                return null;
+            }
+            if (ref == REF_NEW) {
+                String value = in.readUTF();
+                strings.add(value);
+                return value;
+            }
+            return strings.get(ref - REF_FIRST);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,171 @@
+package com.investment.pausetime.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.investment.pausetime.model.MonitoredApp;
+import com.investment.pausetime.repository.MonitoredAppChange;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Opt-in recorder of the window events {@link AppMonitoringService} handles
+ * and what it decided, see {@link EventTrace}. Writes to
+ * {@code files/traces/events.trace}; once that passes {@link #MAX_FILE_BYTES}
+ * it becomes {@code events.trace.1} and a new file is started, so at most two
+ * files are kept. Pull them with {@code adb shell run-as} and replay them with
+ * the benchmark module's {@code replayTrace} task.
+ *
+ * Not thread safe, the service calls it on its event thread. A write error
+ * stops the recording.
+ */
+public class EventTraceRecorder {
+
+    private static final String TAG = "EventTraceRecorder";
+    static final String DIR_NAME = "traces";
+    static final String FILE_NAME = "events.trace";
+    static final String PREVIOUS_FILE_NAME = "events.trace.1";
+    static final int MAX_FILE_BYTES = 256 * 1024;
+
+    private final File directory;
+    private EventTrace.Writer writer;
+    private List<MonitoredApp> apps;
+
+    public EventTraceRecorder(Context context) {
+        this.directory = getDirectory(context);
+    }
+
+    public static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    public boolean isRecording() {
+        return writer != null;
+    }
+
+    /** Starts a new file, {@code apps} is written first so it replays on its own. */
+    public void start(List<MonitoredApp> apps, long now) {
+        if (writer != null) {
+            return;
+        }
+        this.apps = apps;
+        try {
+            // Each file has one header, keep an earlier recording as the previous file
+            File current = new File(directory, FILE_NAME);
+            if (current.length() > 0) {
+                moveToPrevious(current);
+            }
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        open(now);
+    }
+
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close event trace", e);
+        }
+        writer = null;
+        apps = null;
+    }
+
+    /** Records configuration changes, {@code apps} is the new snapshot. */
+    public void recordChanges(List<MonitoredApp> apps, List<MonitoredAppChange> changes) {
+        if (writer == null) {
+            return;
+        }
+        this.apps = apps;
+        try {
+            for (MonitoredAppChange change : changes) {
+                MonitoredApp app = change.getApp();
+                writer.writeApp(app.getPackageName(), app.getDelaySeconds(),
+                        change.getType() != MonitoredAppChange.Type.REMOVED && app.isEnabled());
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void recordEvent(long eventTime, String packageName, String className, int windowId,
+                            OverlayDecisionEngine.Decision decision) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.writeEvent(eventTime, packageName, className, windowId, decision.getReason(),
+                    decision.getDismissPackage() != null, decision.getCancelPackage() != null);
+            if (writer.size() >= MAX_FILE_BYTES) {
+                rotate(eventTime);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /** Pushes buffered records to the file, called after each batch of events. */
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void open(long now) {
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            writer = new EventTrace.Writer(new BufferedOutputStream(
+                    new FileOutputStream(new File(directory, FILE_NAME))), now);
+            for (MonitoredApp app : apps) {
+                writer.writeApp(app.getPackageName(), app.getDelaySeconds(), app.isEnabled());
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void rotate(long now) throws IOException {
+        writer.close();
+        writer = null;
+        moveToPrevious(new File(directory, FILE_NAME));
+        open(now);
+    }
+
+    private void moveToPrevious(File current) throws IOException {
+        File previous = new File(directory, PREVIOUS_FILE_NAME);
+        if (previous.exists() && !previous.delete()) {
+            throw new IOException("Cannot delete " + previous);
+        }
+        if (!current.renameTo(previous)) {
+            throw new IOException("Cannot rotate " + current);
+        }
+    }
+
+    private void fail(IOException e) {
+        Log.w(TAG, "Event trace stopped", e);
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+        }
+        writer = null;
+        apps = null;
+    }
+}
@@ -0,0 +1,65 @@
+package com.investment.pausetime.service;
+
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Feeds {@link FrameTimeTracker} while a pause screen is showing: the
+ * interval between consecutive vsync-aligned frames from a Choreographer
+ * callback, and every layout pass of the overlay hierarchy. Main thread only.
+ */
+final class FrameMonitor implements Choreographer.FrameCallback,
+        ViewTreeObserver.OnGlobalLayoutListener {
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final long jankThresholdNanos;
+    private String renderer;
+    private View view;
+    private long lastFrameNanos;
+    private boolean running;
+
+    FrameMonitor(float refreshRate) {
+        // A frame that took more than one and a half refresh periods missed its vsync
+        jankThresholdNanos = (long) (1.5e9 / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    void start(View view, String renderer) {
+        stop();
+        this.view = view;
+        this.renderer = renderer;
+        lastFrameNanos = 0;
+        running = true;
+        view.getViewTreeObserver().addOnGlobalLayoutListener(this);
+        choreographer.postFrameCallback(this);
+    }
+
+    void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        choreographer.removeFrameCallback(this);
+        view.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+        view = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        if (lastFrameNanos != 0) {
+            long interval = frameTimeNanos - lastFrameNanos;
+            FrameTimeTracker.getInstance().recordFrame(renderer, interval / 1_000_000,
+                    interval > jankThresholdNanos);
+        }
+        lastFrameNanos = frameTimeNanos;
+        choreographer.postFrameCallback(this);
+    }
+
+    @Override
+    public void onGlobalLayout() {
+        FrameTimeTracker.getInstance().recordLayout(renderer);
+    }
+}
@@ -0,0 +1,123 @@
+package com.investment.pausetime.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Frame intervals and layout passes of the pause screen, kept per wave
+ * renderer, and frames drawn per pause, kept per presentation mode, so the
+ * debug screen can compare them.
+ */
+public final class FrameTimeTracker {
+
+    private static final FrameTimeTracker INSTANCE = new FrameTimeTracker();
+
+    private final Map<String, Stats> stats = new TreeMap<>();
+    private final Map<String, PauseStats> pauses = new TreeMap<>();
+
+    private FrameTimeTracker() {
+    }
+
+    public static FrameTimeTracker getInstance() {
+        return INSTANCE;
+    }
+
+    void recordFrame(String renderer, long intervalMillis, boolean janky) {
+        Stats s = statsFor(renderer);
+        s.intervals.record(intervalMillis);
+        if (janky) {
+            synchronized (s) {
+                s.jankyFrames++;
+            }
+        }
+    }
+
+    void recordLayout(String renderer) {
+        Stats s = statsFor(renderer);
+        synchronized (s) {
+            s.layouts++;
+        }
+    }
+
+    void recordPause(String presentation, long frames, long durationMillis) {
+        synchronized (pauses) {
+            PauseStats p = pauses.get(presentation);
+            if (p == null) {
+                p = new PauseStats();
+                pauses.put(presentation, p);
+            }
+            p.pauses++;
+            p.frames += frames;
+            p.durationMillis += durationMillis;
+        }
+    }
+
+    public void clear() {
+        synchronized (stats) {
+            stats.clear();
+        }
+        synchronized (pauses) {
+            pauses.clear();
+        }
+    }
+
+    /** Human readable frame interval percentiles, jank and layout counts per renderer. */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (pauses) {
+            for (Map.Entry<String, PauseStats> entry : pauses.entrySet()) {
+                PauseStats p = entry.getValue();
+                sb.append(entry.getKey())
+                        .append(": ").append(p.pauses).append(" pauses, ")
+                        .append(p.frames / p.pauses).append(" frames/pause, ")
+                        .append(p.durationMillis > 0 ? p.frames * 1000 / p.durationMillis : 0)
+                        .append(" fps\n");
+            }
+        }
+        synchronized (stats) {
+            if (stats.isEmpty()) {
+                return sb.length() > 0 ? sb.toString() : "No frames recorded yet";
+            }
+            for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+                Stats s = entry.getValue();
+                LatencyHistogram h = s.intervals;
+                synchronized (s) {
+                    sb.append(entry.getKey())
+                            .append(" (frames=").append(h.getCount()).append(")\n")
+                            .append("  interval: p50=").append(h.percentile(50))
+                            .append(" p95=").append(h.percentile(95))
+                            .append(" p99=").append(h.percentile(99))
+                            .append(" max=").append(h.getMax())
+                            .append(" ms\n")
+                            .append("  janky frames: ").append(s.jankyFrames)
+                            .append(", layout passes: ").append(s.layouts)
+                            .append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private Stats statsFor(String renderer) {
+        synchronized (stats) {
+            Stats s = stats.get(renderer);
+            if (s == null) {
+                s = new Stats();
+                stats.put(renderer, s);
+            }
+            return s;
+        }
+    }
+
+    private static final class PauseStats {
+        long pauses;
+        long frames;
+        long durationMillis;
+    }
+
+    private static final class Stats {
+        final LatencyHistogram intervals = new LatencyHistogram();
+        long jankyFrames;
+        long layouts;
+    }
+}
@@ -0,0 +1,71 @@
+package com.investment.pausetime.service;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size latency histogram with roughly 10% wide buckets from 1 ms up to
+ * about two minutes. Recording is a bucket search and an increment, percentiles
+ * report the upper bound of the bucket they fall into.
+ */
+class LatencyHistogram {
+
+    private static final long[] BUCKET_UPPER_BOUNDS;
+
+    static {
+        long[] bounds = new long[128];
+        int count = 0;
+        double bound = 1;
+        while (bound < 120_000 && count < bounds.length - 1) {
+            long rounded = Math.round(bound);
+            if (count == 0 || rounded > bounds[count - 1]) {
+                bounds[count++] = rounded;
+            }
+            bound *= 1.1;
+        }
+        bounds[count++] = Long.MAX_VALUE;
+        BUCKET_UPPER_BOUNDS = Arrays.copyOf(bounds, count);
+    }
+
+    private final int[] counts = new int[BUCKET_UPPER_BOUNDS.length];
+    private long total;
+    private long max;
+
+    synchronized void record(long millis) {
+        if (millis < 0) {
+            millis = 0;
+        }
+        int index = Arrays.binarySearch(BUCKET_UPPER_BOUNDS, millis);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        counts[index]++;
+        total++;
+        if (millis > max) {
+            max = millis;
+        }
+    }
+
+    synchronized long getCount() {
+        return total;
+    }
+
+    synchronized long getMax() {
+        return max;
+    }
+
+    /** Upper bound of the bucket holding the given percentile, 0 if empty. */
+    synchronized long percentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_UPPER_BOUNDS[i], max);
+            }
+        }
+        return max;
+    }
+}
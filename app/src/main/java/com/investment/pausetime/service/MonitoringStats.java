@@ -0,0 +1,48 @@
+package com.investment.pausetime.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters showing how many accessibility events reach the
+ * monitoring service and how many of them lead to an overlay being scheduled,
+ * cancelled or dismissed.
+ */
+public final class MonitoringStats {
+
+    private static final AtomicLong eventsReceived = new AtomicLong();
+    private static final AtomicLong eventsActedOn = new AtomicLong();
+    private static final AtomicLong filterUpdates = new AtomicLong();
+
+    private MonitoringStats() {
+    }
+
+    static void onEventReceived() {
+        eventsReceived.incrementAndGet();
+    }
+
+    static void onEventActedOn() {
+        eventsActedOn.incrementAndGet();
+    }
+
+    static void onFilterUpdated() {
+        filterUpdates.incrementAndGet();
+    }
+
+    public static long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    public static long getEventsActedOn() {
+        return eventsActedOn.get();
+    }
+
+    public static long getFilterUpdates() {
+        return filterUpdates.get();
+    }
+
+    public static String summary() {
+        return "received=" + getEventsReceived() +
+                " actedOn=" + getEventsActedOn() +
+                " filterUpdates=" + getFilterUpdates();
+    }
+}
@@ -0,0 +1,15 @@
+package com.investment.pausetime.service;
+
+/**
+ * Commands {@link AppMonitoringService} sends to whatever draws the pause
+ * screen. All calls are made on the main thread.
+ */
+interface OverlayController {
+
+    /** Shows the pause screen unless one is already showing. {@code trace} may be null. */
+    void show(String packageName, String appName, int delaySeconds, PauseTrace trace);
+
+    void dismiss();
+
+    boolean isShowing();
+}
@@ -0,0 +1,320 @@
+package com.investment.pausetime.service;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import java.util.Arrays;
+
+/**
+ * Decides what {@link AppMonitoringService} should do for a window change:
+ * ignore it, dismiss or cancel the overlay of the app being left, and/or
+ * schedule an overlay for the app being opened. Keeps no Android references so
+ * the same code runs in the JVM benchmarks.
+ *
+ * Packages are interned into {@link PackageIds} on first sight and all per-app
+ * state is kept in arrays and bitsets indexed by ID. Monitored apps are looked
+ * up once per package after each config change, so a steady stream of events
+ * allocates nothing.
+ *
+ * Not thread safe, all calls must come from the thread that owns the service's
+ * timers.
+ */
+public class OverlayDecisionEngine {
+
+    static final long DEBOUNCE_DELAY = 1000; // 1 second debounce for complex apps
+    static final long COOLDOWN_PERIOD = 3000; // 3 second cooldown between overlay shows
+
+    public interface AppLookup {
+        MonitoredApp getMonitoredApp(String packageName);
+    }
+
+    public enum Reason {
+        DEBOUNCED,
+        EXCLUDED,
+        SAME_APP,
+        NOT_MONITORED,
+        ALREADY_ACTIVE,
+        ALREADY_PENDING,
+        IN_COOLDOWN,
+        SCHEDULED
+    }
+
+    /**
+     * Outcome of one event. The instance is reused by the engine, read it
+     * before feeding the next event.
+     */
+    public static final class Decision {
+        Reason reason;
+        int packageId;
+        String packageName;
+        int dismissId;
+        String dismissPackage;
+        int cancelId;
+        String cancelPackage;
+        MonitoredApp scheduledApp;
+        boolean appOpened;
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        /** ID of the event's package in {@link OverlayDecisionEngine#getPackageIds()}. */
+        public int getPackageId() {
+            return packageId;
+        }
+
+        /** The event's package, interned so it can be kept without copying. */
+        public String getPackageName() {
+            return packageName;
+        }
+
+        /** Package whose visible overlay has to be dismissed, or null. */
+        public String getDismissPackage() {
+            return dismissPackage;
+        }
+
+        /** Package whose scheduled overlay has to be cancelled, or null. */
+        public String getCancelPackage() {
+            return cancelPackage;
+        }
+
+        /** App to show an overlay for once the show delay has passed, or null. */
+        public MonitoredApp getScheduledApp() {
+            return scheduledApp;
+        }
+
+        /**
+         * True if the event brought a monitored app to the foreground, whatever
+         * happens to its overlay. Further events while it stays there are false.
+         */
+        public boolean isAppOpened() {
+            return appOpened;
+        }
+
+        void reset(Reason reason, int packageId, String packageName) {
+            this.reason = reason;
+            this.packageId = packageId;
+            this.packageName = packageName;
+            this.dismissId = PackageIds.NONE;
+            this.dismissPackage = null;
+            this.cancelId = PackageIds.NONE;
+            this.cancelPackage = null;
+            this.scheduledApp = null;
+            this.appOpened = false;
+        }
+    }
+
+    private static final String[] EXCLUDED_PACKAGES = {
+            "com.android.systemui",
+            "com.google.android.apps.nexuslauncher",
+            "com.android.launcher3"
+    };
+
+    private final AppLookup lookup;
+    private final Decision decision = new Decision();
+    // Our own package and system UI get the first IDs, anything below this is excluded
+    private final PackageIds packageIds = new PackageIds();
+    private final int excludedCount;
+
+    // Per package ID. Bitsets hold one bit per ID, a resolved bit means apps[id] is current.
+    private MonitoredApp[] apps = new MonitoredApp[64];
+    private long[] resolved = new long[1];
+    private long[] active = new long[1];
+    private long[] pending = new long[1]; // Scheduled but not yet shown
+    private long[] cooldownUntil = new long[64]; // Recently shown, no new overlay before this time
+    private int activeCount;
+    private int pendingCount;
+
+    private int currentId = PackageIds.NONE;
+    private boolean currentAppMonitored;
+    private int lastMonitoredId = PackageIds.NONE; // Track the last app we showed overlay for
+    private long lastEventTime = 0;
+    private int lastEventId = PackageIds.NONE;
+
+    public OverlayDecisionEngine(String ownPackageName, AppLookup lookup) {
+        this.lookup = lookup;
+        packageIds.intern(ownPackageName);
+        for (String excluded : EXCLUDED_PACKAGES) {
+            packageIds.intern(excluded);
+        }
+        excludedCount = packageIds.size();
+    }
+
+    /**
+     * Decides on one window change. {@code packageName} is only compared, not
+     * kept, so the accessibility event's own CharSequence can be passed as is.
+     */
+    public Decision onWindowStateChanged(CharSequence packageName, long now) {
+        int id = packageIds.intern(packageName);
+        ensureCapacity(id);
+        String name = packageIds.getName(id);
+
+        // Debounce rapid events from the same package (like YouTube with multiple windows)
+        if (id == lastEventId && (now - lastEventTime) < DEBOUNCE_DELAY) {
+            decision.reset(Reason.DEBOUNCED, id, name);
+            return decision;
+        }
+        lastEventTime = now;
+        lastEventId = id;
+
+        // Don't block our own app or system UI
+        if (id < excludedCount) {
+            decision.reset(Reason.EXCLUDED, id, name);
+            return decision;
+        }
+
+        decision.reset(Reason.SAME_APP, id, name);
+
+        // Check if user is switching away from a monitored app
+        if (id != lastMonitoredId && lastMonitoredId != PackageIds.NONE) {
+            int last = lastMonitoredId;
+            if (get(active, last)) {
+                setActive(last, false);
+                decision.dismissId = last;
+                decision.dismissPackage = packageIds.getName(last);
+                // Remove from cooldown so it can show again when reopened
+                cooldownUntil[last] = 0;
+            }
+            if (get(pending, last)) {
+                setPending(last, false);
+                decision.cancelId = last;
+                decision.cancelPackage = packageIds.getName(last);
+                cooldownUntil[last] = 0;
+            }
+            lastMonitoredId = PackageIds.NONE;
+        }
+
+        // Only trigger if we're switching to a different app
+        if (id == currentId) {
+            return decision;
+        }
+        currentId = id;
+
+        MonitoredApp monitoredApp = getMonitoredApp(id);
+        currentAppMonitored = monitoredApp != null && monitoredApp.isEnabled();
+        if (!currentAppMonitored) {
+            decision.reason = Reason.NOT_MONITORED;
+            return decision;
+        }
+        decision.appOpened = true;
+        // Don't show overlay if already showing or pending for this package
+        if (get(active, id)) {
+            decision.reason = Reason.ALREADY_ACTIVE;
+            return decision;
+        }
+        if (get(pending, id)) {
+            decision.reason = Reason.ALREADY_PENDING;
+            return decision;
+        }
+        // Don't show overlay if recently shown (cooldown period)
+        if (now < cooldownUntil[id]) {
+            decision.reason = Reason.IN_COOLDOWN;
+            return decision;
+        }
+
+        lastMonitoredId = id;
+        setPending(id, true);
+        decision.reason = Reason.SCHEDULED;
+        decision.scheduledApp = monitoredApp;
+        return decision;
+    }
+
+    /**
+     * Called when the show delay of a scheduled overlay has passed. Returns
+     * true if the overlay should be shown now, false if the user already left.
+     * A shown overlay starts the app's cooldown, which simply runs out.
+     */
+    public boolean onShowDue(int packageId, long now) {
+        setPending(packageId, false);
+        if (packageId != currentId) {
+            return false;
+        }
+        setActive(packageId, true);
+        cooldownUntil[packageId] = now + COOLDOWN_PERIOD;
+        return true;
+    }
+
+    /** Called once a shown overlay has had time to finish its countdown. */
+    public void onOverlayFinished(int packageId) {
+        setActive(packageId, false);
+        if (packageId == lastMonitoredId) {
+            lastMonitoredId = PackageIds.NONE;
+        }
+    }
+
+    /**
+     * Called after the monitored apps changed. Each package is looked up again
+     * the next time it comes to the foreground; in between, events only touch
+     * the arrays.
+     */
+    public void invalidateMonitoredApps() {
+        Arrays.fill(resolved, 0);
+    }
+
+    /** The IDs used in decisions, shared with {@link OverlayStateMachine}. */
+    public PackageIds getPackageIds() {
+        return packageIds;
+    }
+
+    /**
+     * True while the foreground app is monitored or an overlay is pending or
+     * showing. Events from every app are needed then to notice the user leaving;
+     * otherwise only launches of monitored apps matter.
+     */
+    public boolean isWatchingForExit() {
+        return currentAppMonitored || activeCount > 0 || pendingCount > 0;
+    }
+
+    public void reset() {
+        Arrays.fill(resolved, 0);
+        Arrays.fill(active, 0);
+        Arrays.fill(pending, 0);
+        Arrays.fill(cooldownUntil, 0);
+        activeCount = 0;
+        pendingCount = 0;
+        currentId = PackageIds.NONE;
+        currentAppMonitored = false;
+        lastMonitoredId = PackageIds.NONE;
+        lastEventId = PackageIds.NONE;
+        lastEventTime = 0;
+    }
+
+    private MonitoredApp getMonitoredApp(int id) {
+        if (!get(resolved, id)) {
+            apps[id] = lookup.getMonitoredApp(packageIds.getName(id));
+            resolved[id >>> 6] |= 1L << id;
+        }
+        return apps[id];
+    }
+
+    private void setActive(int id, boolean value) {
+        if (get(active, id) != value) {
+            active[id >>> 6] ^= 1L << id;
+            activeCount += value ? 1 : -1;
+        }
+    }
+
+    private void setPending(int id, boolean value) {
+        if (get(pending, id) != value) {
+            pending[id >>> 6] ^= 1L << id;
+            pendingCount += value ? 1 : -1;
+        }
+    }
+
+    private static boolean get(long[] bits, int id) {
+        return (bits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /** Grows the per-ID arrays once a new package gets an ID past their end. */
+    private void ensureCapacity(int id) {
+        if (id < apps.length) {
+            return;
+        }
+        int capacity = apps.length * 2;
+        apps = Arrays.copyOf(apps, capacity);
+        cooldownUntil = Arrays.copyOf(cooldownUntil, capacity);
+        int words = capacity >>> 6;
+        resolved = Arrays.copyOf(resolved, words);
+        active = Arrays.copyOf(active, words);
+        pending = Arrays.copyOf(pending, words);
+    }
+}
@@ -0,0 +1,164 @@
+package com.investment.pausetime.service;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import java.util.Arrays;
+
+/**
+ * The overlay lifecycle of {@link AppMonitoringService} without Android: each
+ * window change goes through {@link OverlayDecisionEngine}, and the timers that
+ * follow a decision (the show delay and the end of the pause) are kept here.
+ * Cooldowns are deadlines inside the engine and need no timer.
+ *
+ * Each app gets its show and finish timers the first time it is scheduled,
+ * indexed by the engine's package ID; after that they are rescheduled or
+ * cancelled in the shared {@link TimerQueue} without allocating. Time comes from the injected
+ * {@link Clock}, SystemClock on the device and a virtual clock in the JVM
+ * tests and the benchmark simulator.
+ *
+ * Not thread safe, all calls and timers must run on one thread.
+ */
+public class OverlayStateMachine {
+
+    static final long SHOW_DELAY = 500; // Small delay to ensure the app window is ready
+    static final long FINISH_GRACE = 2000; // Overlay state outlives the countdown by this much
+
+    public interface Clock {
+        long uptimeMillis();
+    }
+
+    /** Effects of the state machine. Called on the thread that feeds it. */
+    public interface Listener {
+        /**
+         * Returns how long the overlay will be on screen: the app's delay, or
+         * less when it resumes a pause that was taken down before it finished.
+         */
+        long onShowOverlay(MonitoredApp app, long eventTime, long decisionTime);
+
+        void onDismissOverlay(String packageName);
+
+        /** A scheduled overlay will not be shown, it was cancelled or the user left first. */
+        void onShowDropped(String packageName, long eventTime);
+
+        /** A timer changed what {@link #isWatchingForExit()} returns. */
+        void onStateChanged();
+    }
+
+    private final OverlayDecisionEngine engine;
+    private final Clock clock;
+    private final TimerQueue timers;
+    private final Listener listener;
+    private AppTimers[] appTimers = new AppTimers[16]; // By package ID, null until first scheduled
+
+    public OverlayStateMachine(OverlayDecisionEngine engine, Clock clock, TimerQueue timers,
+                               Listener listener) {
+        this.engine = engine;
+        this.clock = clock;
+        this.timers = timers;
+        this.listener = listener;
+    }
+
+    /**
+     * Handles one window change and starts or cancels timers for it. The
+     * returned decision is reused, read it before feeding the next event.
+     */
+    public OverlayDecisionEngine.Decision onWindowStateChanged(CharSequence packageName, long eventTime) {
+        OverlayDecisionEngine.Decision decision = engine.onWindowStateChanged(packageName, eventTime);
+
+        int dismissId = decision.dismissId;
+        if (dismissId != PackageIds.NONE) {
+            AppTimers dismissed = getTimers(dismissId);
+            if (dismissed != null) {
+                // The engine already dropped the overlay, a late finish must not touch the next one
+                timers.cancel(dismissed.finish);
+            }
+            listener.onDismissOverlay(decision.getDismissPackage());
+        }
+
+        int cancelId = decision.cancelId;
+        if (cancelId != PackageIds.NONE) {
+            AppTimers cancelled = getTimers(cancelId);
+            if (cancelled != null && cancelled.show.isScheduled()) {
+                timers.cancel(cancelled.show);
+                listener.onShowDropped(cancelled.packageName, cancelled.eventTime);
+            }
+        }
+
+        MonitoredApp scheduledApp = decision.getScheduledApp();
+        if (scheduledApp != null) {
+            int id = decision.getPackageId();
+            AppTimers scheduled = getTimers(id);
+            if (scheduled == null) {
+                if (id >= appTimers.length) {
+                    appTimers = Arrays.copyOf(appTimers, Math.max(id + 1, appTimers.length * 2));
+                }
+                scheduled = new AppTimers(id, decision.getPackageName());
+                appTimers[id] = scheduled;
+            }
+            scheduled.app = scheduledApp;
+            scheduled.eventTime = eventTime;
+            scheduled.decisionTime = clock.uptimeMillis();
+            timers.schedule(scheduled.show, scheduled.decisionTime + SHOW_DELAY);
+        }
+        return decision;
+    }
+
+    /** Called after the monitored apps changed, see {@link OverlayDecisionEngine#invalidateMonitoredApps()}. */
+    public void invalidateMonitoredApps() {
+        engine.invalidateMonitoredApps();
+    }
+
+    /** See {@link OverlayDecisionEngine#isWatchingForExit()}. */
+    public boolean isWatchingForExit() {
+        return engine.isWatchingForExit();
+    }
+
+    /** True while a show is waiting for its delay. */
+    public boolean isShowPending() {
+        for (AppTimers entry : appTimers) {
+            if (entry != null && entry.show.isScheduled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onShowDue(AppTimers entry) {
+        MonitoredApp app = entry.app;
+        long now = clock.uptimeMillis();
+        // Only show if user is still in the app
+        if (!engine.onShowDue(entry.packageId, now)) {
+            listener.onShowDropped(entry.packageName, entry.eventTime);
+            listener.onStateChanged();
+            return;
+        }
+        long duration = listener.onShowOverlay(app, entry.eventTime, entry.decisionTime);
+        // Clean up once the countdown has completed
+        timers.schedule(entry.finish, now + duration + FINISH_GRACE);
+    }
+
+    private void onOverlayFinished(AppTimers entry) {
+        engine.onOverlayFinished(entry.packageId);
+        listener.onStateChanged();
+    }
+
+    private AppTimers getTimers(int id) {
+        return id < appTimers.length ? appTimers[id] : null;
+    }
+
+    /** Timers and the pending show of one app, created once and reused. */
+    private final class AppTimers {
+        final int packageId;
+        final String packageName;
+        final TimerQueue.Timer show = new TimerQueue.Timer(() -> onShowDue(this));
+        final TimerQueue.Timer finish = new TimerQueue.Timer(() -> onOverlayFinished(this));
+        MonitoredApp app;
+        long eventTime;
+        long decisionTime;
+
+        AppTimers(int packageId, String packageName) {
+            this.packageId = packageId;
+            this.packageName = packageName;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.investment.pausetime.service;
+
+/**
+ * Interns package names into small, dense integer IDs so per-app state can
+ * live in arrays instead of hash sets. Lookups accept any CharSequence and
+ * compare it char by char, so the name carried by an accessibility event is
+ * never copied; only the first sighting of a package allocates. IDs are
+ * stable for the life of the table.
+ *
+ * Not thread safe.
+ */
+public final class PackageIds {
+
+    public static final int NONE = -1;
+
+    private String[] names = new String[16];
+    private int[] hashes = new int[16];
+    private int size;
+    // Open addressing, holds id + 1 so that 0 marks an empty slot
+    private int[] slots = new int[32];
+
+    /** Returns the ID of {@code packageName}, assigning the next one on first sight. */
+    public int intern(CharSequence packageName) {
+        int hash = hash(packageName);
+        int mask = slots.length - 1;
+        int index = spread(hash) & mask;
+        while (slots[index] != 0) {
+            int id = slots[index] - 1;
+            if (hashes[id] == hash && contentEquals(names[id], packageName)) {
+                return id;
+            }
+            index = (index + 1) & mask;
+        }
+        return add(packageName.toString(), hash, index);
+    }
+
+    /** Returns the ID of {@code packageName}, or {@link #NONE} if it was never interned. */
+    public int find(CharSequence packageName) {
+        int hash = hash(packageName);
+        int mask = slots.length - 1;
+        int index = spread(hash) & mask;
+        while (slots[index] != 0) {
+            int id = slots[index] - 1;
+            if (hashes[id] == hash && contentEquals(names[id], packageName)) {
+                return id;
+            }
+            index = (index + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /** The interned name of {@code id}, the same instance every time. */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Char by char equality of two names, without copying either. */
+    static boolean contentEquals(CharSequence a, CharSequence b) {
+        if (a instanceof String) {
+            return ((String) a).contentEquals(b);
+        }
+        int length = a.length();
+        if (length != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int add(String name, int hash, int index) {
+        if (size == names.length) {
+            String[] grownNames = new String[size * 2];
+            System.arraycopy(names, 0, grownNames, 0, size);
+            names = grownNames;
+            int[] grownHashes = new int[size * 2];
+            System.arraycopy(hashes, 0, grownHashes, 0, size);
+            hashes = grownHashes;
+        }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[index] = id + 1;
+        // Keep the table at most half full so probes stay short
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int index = spread(hashes[id]) & mask;
+            while (rehashed[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            rehashed[index] = id + 1;
+        }
+        slots = rehashed;
+    }
+
+    /** Same value as {@link String#hashCode()}, which Strings have cached. */
+    private static int hash(CharSequence name) {
+        if (name instanceof String) {
+            return name.hashCode();
+        }
+        int hash = 0;
+        for (int i = 0, length = name.length(); i < length; i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
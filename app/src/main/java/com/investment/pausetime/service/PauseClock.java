@@ -0,0 +1,74 @@
+package com.investment.pausetime.service;
+
+/**
+ * Monotonic clock of one pause. The wave level, the breathing circle and the
+ * end of the pause are all pure functions of the elapsed time, so whoever
+ * renders the pause only needs a single frame or timer callback, and can pick
+ * up a pause again from wherever it is.
+ *
+ * Times are {@code SystemClock.uptimeMillis()} based, but the class keeps no
+ * Android references so it can be tested on the JVM.
+ */
+final class PauseClock {
+
+    static final long BREATH_PERIOD = 4000; // 4 seconds per breath (calming pace)
+    private static final float BREATH_SCALE = 0.12f;
+
+    private final String packageName;
+    private final long duration;
+    private final long startTime;
+
+    PauseClock(String packageName, long durationMillis, long startTime) {
+        this.packageName = packageName;
+        this.duration = durationMillis;
+        this.startTime = startTime;
+    }
+
+    String getPackageName() {
+        return packageName;
+    }
+
+    long getDuration() {
+        return duration;
+    }
+
+    long getElapsed(long now) {
+        return Math.max(0, Math.min(duration, now - startTime));
+    }
+
+    long getRemaining(long now) {
+        return duration - getElapsed(now);
+    }
+
+    boolean isFinished(long now) {
+        return now - startTime >= duration;
+    }
+
+    /** Wave fill, rising from 0 to 1 and back to 0 over the whole pause. */
+    float getWaveLevel(long now) {
+        if (duration <= 0) {
+            return 0f;
+        }
+        return upAndDown(ease(getElapsed(now) / (float) duration));
+    }
+
+    /** Breathing circle scale, from 1 to 1.12 and back once per breath. */
+    float getBreathScale(long now) {
+        long intoBreath = Math.max(0, now - startTime) % BREATH_PERIOD;
+        return 1f + BREATH_SCALE * upAndDown(ease(intoBreath / (float) BREATH_PERIOD));
+    }
+
+    /** Subtle alpha change that follows the breathing scale, 0.55 to 0.57. */
+    float getBreathAlpha(long now) {
+        return 0.55f + (getBreathScale(now) - 1f) * 0.15f;
+    }
+
+    // Same curve as AccelerateDecelerateInterpolator
+    private static float ease(float fraction) {
+        return (float) (Math.cos((fraction + 1) * Math.PI) / 2.0) + 0.5f;
+    }
+
+    private static float upAndDown(float fraction) {
+        return fraction < 0.5f ? fraction * 2f : 2f - fraction * 2f;
+    }
+}
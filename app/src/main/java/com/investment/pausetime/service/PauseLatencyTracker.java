@@ -0,0 +1,91 @@
+package com.investment.pausetime.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory latency breakdown of the path from an accessibility event to the
+ * first drawn frame of the pause screen, kept per package. All timestamps are
+ * {@code SystemClock.uptimeMillis()} based, like
+ * {@code AccessibilityEvent.getEventTime()}.
+ */
+public final class PauseLatencyTracker {
+
+    public enum Stage {
+        EVENT_TO_DECISION("event -> decision"),
+        DECISION_TO_DISPATCH("decision -> dispatch"),
+        DISPATCH_TO_START("dispatch -> onStartCommand"),
+        START_TO_INFLATED("onStartCommand -> inflated"),
+        INFLATED_TO_FIRST_FRAME("inflated -> first frame"),
+        TOTAL("event -> first frame");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final PauseLatencyTracker INSTANCE = new PauseLatencyTracker();
+
+    private final Map<String, LatencyHistogram[]> histograms = new TreeMap<>();
+
+    private PauseLatencyTracker() {
+    }
+
+    public static PauseLatencyTracker getInstance() {
+        return INSTANCE;
+    }
+
+    public void record(String packageName, long eventTime, long decisionTime, long dispatchTime,
+                       long startCommandTime, long inflatedTime, long firstFrameTime) {
+        LatencyHistogram[] stages;
+        synchronized (histograms) {
+            stages = histograms.get(packageName);
+            if (stages == null) {
+                stages = new LatencyHistogram[Stage.values().length];
+                for (int i = 0; i < stages.length; i++) {
+                    stages[i] = new LatencyHistogram();
+                }
+                histograms.put(packageName, stages);
+            }
+        }
+        stages[Stage.EVENT_TO_DECISION.ordinal()].record(decisionTime - eventTime);
+        stages[Stage.DECISION_TO_DISPATCH.ordinal()].record(dispatchTime - decisionTime);
+        stages[Stage.DISPATCH_TO_START.ordinal()].record(startCommandTime - dispatchTime);
+        stages[Stage.START_TO_INFLATED.ordinal()].record(inflatedTime - startCommandTime);
+        stages[Stage.INFLATED_TO_FIRST_FRAME.ordinal()].record(firstFrameTime - inflatedTime);
+        stages[Stage.TOTAL.ordinal()].record(firstFrameTime - eventTime);
+    }
+
+    public void clear() {
+        synchronized (histograms) {
+            histograms.clear();
+        }
+    }
+
+    /** Human readable p50/p95/p99 per package and stage, in milliseconds. */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (histograms) {
+            if (histograms.isEmpty()) {
+                return "No pauses recorded yet";
+            }
+            for (Map.Entry<String, LatencyHistogram[]> entry : histograms.entrySet()) {
+                LatencyHistogram[] stages = entry.getValue();
+                sb.append(entry.getKey())
+                        .append(" (n=").append(stages[Stage.TOTAL.ordinal()].getCount()).append(")\n");
+                for (Stage stage : Stage.values()) {
+                    LatencyHistogram h = stages[stage.ordinal()];
+                    sb.append("  ").append(stage.label)
+                            .append(": p50=").append(h.percentile(50))
+                            .append(" p95=").append(h.percentile(95))
+                            .append(" p99=").append(h.percentile(99))
+                            .append(" max=").append(h.getMax())
+                            .append(" ms\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
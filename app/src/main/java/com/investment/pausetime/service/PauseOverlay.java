@@ -0,0 +1,549 @@
+package com.investment.pausetime.service;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.graphics.PixelFormat;
+import android.graphics.Bitmap;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.investment.pausetime.R;
+import com.investment.pausetime.utils.IconCache;
+
+/**
+ * The pause screen window: inflation, window attachment, countdown and
+ * animations. Must be used from the main thread.
+ *
+ * Countdown and animations all derive from one {@link PauseClock}, advanced by
+ * a single Choreographer frame callback, or a timer in stepped mode.
+ *
+ * In warm mode the inflated view is kept detached between pauses, so a show
+ * only rebinds the icon and name and restarts the clock. {@link #release()}
+ * drops it again, e.g. under memory pressure.
+ *
+ * The wave is drawn by {@link PauseWaveView} and animated by translation only.
+ * The legacy renderer, which resizes a plain view every frame, can still be
+ * selected to compare frame times.
+ *
+ * In reduced-power mode the window asks for the display's lowest refresh
+ * rate, and while battery saver is on or the device is thermally throttled
+ * the wave advances in one-second steps with a still breathing circle.
+ * Either can change during a pause, the overlay switches over as they do.
+ */
+class PauseOverlay {
+
+    private static final String TAG = "PauseOverlay";
+    static final String RENDERER_WAVE_VIEW = "wave view";
+    static final String RENDERER_LEGACY = "legacy layout";
+    static final String PRESENTATION_FULL = "full rate";
+    static final String PRESENTATION_REDUCED = "reduced rate";
+    static final String PRESENTATION_STEPPED = "stepped";
+    private static final long STEP_INTERVAL = 1000;
+
+    interface Listener {
+        /** The pause ran out and the overlay removed itself. */
+        void onPauseFinished(String packageName, long durationMillis);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final WindowManager windowManager;
+    private final WindowManager.LayoutParams layoutParams;
+    private boolean warm;
+    private boolean legacyRenderer;
+    private boolean reducedPower;
+    private final PowerManager powerManager;
+    private final IconCache iconCache;
+    private final float lowestRefreshRate;
+    // Only set in debuggable builds
+    private final FrameMonitor frameMonitor;
+
+    private View overlayView;
+    private ImageView appIcon;
+    private TextView appNameText;
+    private View waveView;
+    private PauseWaveView waveLevelView;
+    private ImageView breathingCircleImage;
+    private boolean isShowing = false;
+    private String currentPackageName;
+    private PauseClock clock;
+    private String presentation;
+    private long showStartTime;
+    private long frameCount;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Choreographer.FrameCallback frameCallback = this::onFrame;
+    private final Runnable stepRunnable = this::step;
+    private final ViewTreeObserver.OnDrawListener frameCounter = () -> frameCount++;
+    // Registered while a reduced-power pause is showing
+    private final BroadcastReceiver powerSaveReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            updatePresentation();
+        }
+    };
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+    private boolean watchingPower;
+
+    // Pause taken down by suspend(), shared so a new service instance can resume it.
+    // Written on the main thread, read by getPauseDuration on the monitoring thread.
+    private static volatile PauseClock suspendedClock;
+
+    PauseOverlay(Context context, int windowType, Listener listener) {
+        this.context = context;
+        this.listener = listener;
+        this.windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+
+        // Setup window parameters to block all interactions
+        layoutParams = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                windowType,
+                WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL |
+                        WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
+                        WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON |
+                        WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH,
+                PixelFormat.TRANSLUCENT
+        );
+        layoutParams.gravity = Gravity.TOP | Gravity.START;
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        iconCache = IconCache.getInstance(context);
+        Display display = ((DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE))
+                .getDisplay(Display.DEFAULT_DISPLAY);
+        lowestRefreshRate = findLowestRefreshRate(display);
+
+        boolean debuggable = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        frameMonitor = debuggable
+                ? new FrameMonitor(display.getRefreshRate())
+                : null;
+    }
+
+    /** Window type for an overlay drawn by a regular service. */
+    @SuppressWarnings("deprecation")
+    static int applicationOverlayType() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+                : WindowManager.LayoutParams.TYPE_PHONE;
+    }
+
+    void setWarm(boolean warm) {
+        this.warm = warm;
+        if (!warm && !isShowing) {
+            release();
+        }
+    }
+
+    /** Resize a plain view every frame instead of translating {@link PauseWaveView}. */
+    void setLegacyRenderer(boolean legacyRenderer) {
+        this.legacyRenderer = legacyRenderer;
+    }
+
+    /** Ask for a low frame rate, and step the animation when saving power or throttled. */
+    void setReducedPower(boolean reducedPower) {
+        this.reducedPower = reducedPower;
+    }
+
+    /** Inflates the view ahead of the first pause. No-op unless warm. */
+    void prepare() {
+        if (warm && overlayView == null) {
+            inflate();
+        }
+    }
+
+    boolean isShowing() {
+        return isShowing;
+    }
+
+    String getCurrentPackageName() {
+        return currentPackageName;
+    }
+
+    /**
+     * Shows the pause screen. Returns false if it could not be attached to the
+     * window. {@code trace} may be null when the request was not timed.
+     *
+     * If the same package's pause was suspended and has time left, it resumes
+     * from its elapsed time instead of starting over.
+     */
+    boolean show(String packageName, String appName, int delaySeconds, PauseTrace trace) {
+        if (isShowing) {
+            Log.d(TAG, "Overlay already showing");
+            return true;
+        }
+
+        if (overlayView == null) {
+            inflate();
+        }
+        if (trace != null) {
+            trace.inflatedTime = SystemClock.uptimeMillis();
+        }
+
+        long now = SystemClock.uptimeMillis();
+        PauseClock resumed = suspendedClock;
+        suspendedClock = null;
+        if (resumed != null && resumed.getPackageName().equals(packageName) && !resumed.isFinished(now)) {
+            clock = resumed;
+            Log.d(TAG, "Resuming pause at " + clock.getElapsed(now) + "ms");
+        } else {
+            clock = new PauseClock(packageName, delaySeconds * 1000L, now);
+        }
+
+        isShowing = true;
+        currentPackageName = packageName;
+        presentation = choosePresentation();
+        applyPresentation();
+        // Draw the first frame at the current position, not the resting one
+        if (!clock.isFinished(now)) {
+            render(now);
+        }
+
+        // Add view to window
+        Trace.beginSection("Overlay.addView");
+        try {
+            windowManager.addView(overlayView, layoutParams);
+            Log.d(TAG, "Overlay view added to window");
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to add overlay view", e);
+            isShowing = false;
+            currentPackageName = null;
+            clock = null;
+            return false;
+        } finally {
+            Trace.endSection();
+        }
+        if (trace != null) {
+            trackFirstFrame(packageName, trace);
+        }
+        if (frameMonitor != null) {
+            frameMonitor.start(overlayView, legacyRenderer ? RENDERER_LEGACY : RENDERER_WAVE_VIEW);
+        }
+        frameCount = 0;
+        showStartTime = now;
+        overlayView.getViewTreeObserver().addOnDrawListener(frameCounter);
+        if (reducedPower) {
+            startWatchingPower();
+        }
+
+        // Icons are normally prefetched while the pause is scheduled
+        Bitmap icon = iconCache.getCached(packageName);
+        appIcon.setImageBitmap(icon);
+        if (icon == null) {
+            iconCache.load(packageName, (loadedPackage, loaded) -> {
+                if (isShowing && loadedPackage.equals(currentPackageName)) {
+                    appIcon.setImageBitmap(loaded);
+                }
+            });
+        }
+
+        appNameText.setText(appName);
+
+        Log.d(TAG, "Starting " + presentation + " pause for " + clock.getRemaining(now) + "ms");
+        startTicking();
+        return true;
+    }
+
+    /**
+     * How long a {@link #show} of {@code packageName} at {@code now} would keep
+     * the overlay up: what is left of its suspended pause, or else
+     * {@code durationMillis}. Safe on any thread.
+     */
+    static long getPauseDuration(String packageName, long durationMillis, long now) {
+        PauseClock resumed = suspendedClock;
+        if (resumed != null && resumed.getPackageName().equals(packageName) && !resumed.isFinished(now)) {
+            return resumed.getRemaining(now);
+        }
+        return durationMillis;
+    }
+
+    /** Removes the overlay from the window. Keeps the view for the next pause if warm. */
+    void dismiss() {
+        Log.d(TAG, "Dismissing overlay (isShowing=" + isShowing + ")");
+
+        if (!isShowing) {
+            Log.d(TAG, "Overlay not showing, nothing to dismiss");
+            return;
+        }
+
+        stopTicking();
+        stopWatchingPower();
+        if (frameMonitor != null) {
+            frameMonitor.stop();
+        }
+        overlayView.getViewTreeObserver().removeOnDrawListener(frameCounter);
+        FrameTimeTracker.getInstance().recordPause(presentation, frameCount,
+                SystemClock.uptimeMillis() - showStartTime);
+
+        try {
+            windowManager.removeView(overlayView);
+            Log.d(TAG, "Overlay view removed from window");
+        } catch (Exception e) {
+            Log.e(TAG, "Error removing overlay view", e);
+        }
+
+        isShowing = false;
+        currentPackageName = null;
+        clock = null;
+
+        if (!warm) {
+            release();
+        }
+    }
+
+    /**
+     * Removes the overlay without ending the pause, e.g. when the owning
+     * service goes away. A later {@link #show} of the same package, from any
+     * instance in the process, continues where this one left off.
+     */
+    void suspend() {
+        PauseClock current = clock;
+        dismiss();
+        if (current != null) {
+            suspendedClock = current;
+        }
+    }
+
+    /** Re-applies the full-screen window after a rotation or other configuration change. */
+    void onConfigurationChanged() {
+        if (!isShowing) {
+            return;
+        }
+        try {
+            windowManager.updateViewLayout(overlayView, layoutParams);
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating overlay layout", e);
+        }
+        // The clock keeps running; the next frame lays the wave out for the new size
+    }
+
+    /** Drops the inflated view. Ignored while showing. */
+    void release() {
+        if (isShowing || overlayView == null) {
+            return;
+        }
+        overlayView = null;
+        appIcon = null;
+        appNameText = null;
+        waveView = null;
+        waveLevelView = null;
+        breathingCircleImage = null;
+        Log.d(TAG, "Overlay view released");
+    }
+
+    private void finish() {
+        String packageName = currentPackageName;
+        long duration = clock.getDuration();
+        dismiss();
+        listener.onPauseFinished(packageName, duration);
+    }
+
+    /** Sets the window's refresh rate and the wave view for {@link #presentation}. */
+    private void applyPresentation() {
+        layoutParams.preferredRefreshRate = PRESENTATION_FULL.equals(presentation)
+                ? 0 : lowestRefreshRate;
+        boolean useWaveView = !legacyRenderer || PRESENTATION_STEPPED.equals(presentation);
+        waveView.setVisibility(useWaveView ? View.GONE : View.VISIBLE);
+        waveLevelView.setVisibility(useWaveView ? View.VISIBLE : View.GONE);
+    }
+
+    // Battery saver or the thermal status changed while showing
+    private void updatePresentation() {
+        if (!isShowing) {
+            return;
+        }
+        String next = choosePresentation();
+        if (next.equals(presentation)) {
+            return;
+        }
+        Log.d(TAG, "Switching pause from " + presentation + " to " + next);
+        stopTicking();
+        // Each presentation keeps its own frame rate in the stats
+        long now = SystemClock.uptimeMillis();
+        FrameTimeTracker.getInstance().recordPause(presentation, frameCount, now - showStartTime);
+        frameCount = 0;
+        showStartTime = now;
+        float refreshRate = layoutParams.preferredRefreshRate;
+        presentation = next;
+        applyPresentation();
+        if (layoutParams.preferredRefreshRate != refreshRate) {
+            try {
+                windowManager.updateViewLayout(overlayView, layoutParams);
+            } catch (Exception e) {
+                Log.e(TAG, "Error updating overlay refresh rate", e);
+            }
+        }
+        startTicking();
+    }
+
+    private void startWatchingPower() {
+        context.registerReceiver(powerSaveReceiver,
+                new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            if (thermalListener == null) {
+                thermalListener = status -> updatePresentation();
+            }
+            powerManager.addThermalStatusListener(thermalListener);
+        }
+        watchingPower = true;
+    }
+
+    private void stopWatchingPower() {
+        if (!watchingPower) {
+            return;
+        }
+        watchingPower = false;
+        context.unregisterReceiver(powerSaveReceiver);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            powerManager.removeThermalStatusListener(thermalListener);
+        }
+    }
+
+    private void startTicking() {
+        if (PRESENTATION_STEPPED.equals(presentation)) {
+            breathingCircleImage.setScaleX(1.0f);
+            breathingCircleImage.setScaleY(1.0f);
+            breathingCircleImage.setAlpha(0.6f);
+            step();
+        } else {
+            choreographer.postFrameCallback(frameCallback);
+        }
+    }
+
+    private void stopTicking() {
+        choreographer.removeFrameCallback(frameCallback);
+        overlayView.removeCallbacks(stepRunnable);
+    }
+
+    // Full and reduced rate: one Choreographer callback per frame
+    private void onFrame(long frameTimeNanos) {
+        if (!isShowing) {
+            return;
+        }
+        if (render(frameTimeNanos / 1_000_000)) {
+            choreographer.postFrameCallback(frameCallback);
+        }
+    }
+
+    // Stepped: one timer wakeup per step, or at the end of the pause if sooner
+    private void step() {
+        if (!isShowing) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (render(now)) {
+            overlayView.postDelayed(stepRunnable, Math.min(STEP_INTERVAL, clock.getRemaining(now)));
+        }
+    }
+
+    /** Applies the clock to the views. Returns false once the pause is over. */
+    private boolean render(long now) {
+        if (clock.isFinished(now)) {
+            Log.d(TAG, "Pause completed, dismissing overlay");
+            finish();
+            return false;
+        }
+        float level = clock.getWaveLevel(now);
+        if (legacyRenderer && !PRESENTATION_STEPPED.equals(presentation)) {
+            // Original renderer: resizing the view runs a layout pass every frame
+            ViewGroup.LayoutParams params = waveView.getLayoutParams();
+            params.height = (int) (level * overlayView.getHeight());
+            waveView.setLayoutParams(params);
+        } else {
+            waveLevelView.setLevel(level);
+        }
+        if (!PRESENTATION_STEPPED.equals(presentation)) {
+            float scale = clock.getBreathScale(now);
+            breathingCircleImage.setScaleX(scale);
+            breathingCircleImage.setScaleY(scale);
+            breathingCircleImage.setAlpha(clock.getBreathAlpha(now));
+        }
+        return true;
+    }
+
+    private void inflate() {
+        // Create overlay view with application theme context
+        LayoutInflater inflater = LayoutInflater.from(context.getApplicationContext());
+        Trace.beginSection("Overlay.inflate");
+        try {
+            overlayView = inflater.inflate(R.layout.activity_overlay, null);
+        } finally {
+            Trace.endSection();
+        }
+
+        // Make overlay intercept all touches and key events
+        overlayView.setClickable(true);
+        overlayView.setFocusable(true);
+        overlayView.setFocusableInTouchMode(true);
+        overlayView.setOnKeyListener((v, keyCode, event) -> {
+            // Block all key events including back button
+            return true;
+        });
+
+        // Setup UI
+        appIcon = overlayView.findViewById(R.id.appIcon);
+        appNameText = overlayView.findViewById(R.id.appName);
+        waveView = overlayView.findViewById(R.id.waveView);
+        waveLevelView = overlayView.findViewById(R.id.waveLevelView);
+        breathingCircleImage = overlayView.findViewById(R.id.breathingCircleImage);
+    }
+
+    private void trackFirstFrame(String packageName, PauseTrace trace) {
+        final View view = overlayView;
+        view.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean recorded;
+
+            @Override
+            public void onDraw() {
+                if (recorded) {
+                    return;
+                }
+                recorded = true;
+                trace.firstFrameTime = SystemClock.uptimeMillis();
+                trace.record(packageName);
+                Log.d(TAG, "First overlay frame " + (trace.firstFrameTime - trace.eventTime) + "ms after event");
+                // Listeners can't be removed from inside onDraw
+                view.post(() -> view.getViewTreeObserver().removeOnDrawListener(this));
+            }
+        });
+    }
+
+    private String choosePresentation() {
+        if (!reducedPower) {
+            return PRESENTATION_FULL;
+        }
+        boolean throttled = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q &&
+                powerManager.getCurrentThermalStatus() >= PowerManager.THERMAL_STATUS_MODERATE;
+        return powerManager.isPowerSaveMode() || throttled
+                ? PRESENTATION_STEPPED
+                : PRESENTATION_REDUCED;
+    }
+
+    /** Lowest refresh rate the display offers at its current resolution, 0 if unknown. */
+    private static float findLowestRefreshRate(Display display) {
+        Display.Mode current = display.getMode();
+        float lowest = 0;
+        for (Display.Mode mode : display.getSupportedModes()) {
+            if (mode.getPhysicalWidth() == current.getPhysicalWidth() &&
+                    mode.getPhysicalHeight() == current.getPhysicalHeight() &&
+                    (lowest == 0 || mode.getRefreshRate() < lowest)) {
+                lowest = mode.getRefreshRate();
+            }
+        }
+        return lowest;
+    }
+}
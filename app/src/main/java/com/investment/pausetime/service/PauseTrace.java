@@ -0,0 +1,39 @@
+package com.investment.pausetime.service;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Uptime timestamps of one pause as it moves from the accessibility event to
+ * the first drawn overlay frame. Filled in stage by stage and handed to
+ * {@link PauseLatencyTracker} once the frame is drawn.
+ */
+final class PauseTrace {
+
+    static final String TRACE_PAUSE_PIPELINE = "PausePipeline";
+
+    long eventTime;
+    long decisionTime;
+    long dispatchTime;
+    long startCommandTime;
+    long inflatedTime;
+    long firstFrameTime;
+
+    void record(String packageName) {
+        PauseLatencyTracker.getInstance().record(packageName, eventTime, decisionTime,
+                dispatchTime, startCommandTime, inflatedTime, firstFrameTime);
+        endAsyncSection(eventTime);
+    }
+
+    static void beginAsyncSection(long eventTime) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(TRACE_PAUSE_PIPELINE, (int) eventTime);
+        }
+    }
+
+    static void endAsyncSection(long eventTime) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(TRACE_PAUSE_PIPELINE, (int) eventTime);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.investment.pausetime.service;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Full-size wave fill for the pause screen. The fill is recorded once and the
+ * level is applied as a translation of the view's render node, so animating
+ * it needs neither a layout pass nor a redraw of the view.
+ */
+public class PauseWaveView extends View {
+
+    private static final int WAVE_COLOR = 0x8087CEEB; // #87CEEB at 50% alpha
+
+    private final Paint paint = new Paint();
+    private float level;
+
+    public PauseWaveView(Context context) {
+        this(context, null);
+    }
+
+    public PauseWaveView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        paint.setColor(WAVE_COLOR);
+    }
+
+    /** 0 hides the wave below the bottom edge, 1 covers the whole view. */
+    public void setLevel(float level) {
+        this.level = level;
+        setTranslationY((1f - level) * getHeight());
+    }
+
+    public float getLevel() {
+        return level;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        setTranslationY((1f - level) * h);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawRect(0, 0, getWidth(), getHeight(), paint);
+    }
+
+    @Override
+    public boolean hasOverlappingRendering() {
+        return false;
+    }
+}
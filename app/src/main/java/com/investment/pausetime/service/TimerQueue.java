@@ -0,0 +1,183 @@
+package com.investment.pausetime.service;
+
+/**
+ * Deadline queue behind all timers of the monitoring service. Timers are
+ * long-lived entries kept in a binary heap by deadline; scheduling, moving
+ * and cancelling one only updates the heap, nothing is allocated once the
+ * heap has grown to the number of timers. The queue asks its {@link Wakeup}
+ * for exactly one platform callback, at the earliest deadline, and moves it
+ * when that deadline changes.
+ *
+ * Not thread safe, all calls and timer tasks must run on one thread.
+ */
+public final class TimerQueue {
+
+    /** The one platform callback, which must call {@link #runDue(long)}. */
+    public interface Wakeup {
+        void wakeAt(long uptimeMillis);
+
+        void cancelWakeup();
+    }
+
+    /** A reusable timer, scheduled at most once at a time. */
+    public static final class Timer {
+        private final Runnable task;
+        private long deadline;
+        private int index = -1; // Position in the heap, -1 when not scheduled
+
+        public Timer(Runnable task) {
+            this.task = task;
+        }
+
+        public boolean isScheduled() {
+            return index >= 0;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+
+    private static final long NOT_ARMED = Long.MIN_VALUE;
+
+    private final Wakeup wakeup;
+    private Timer[] heap = new Timer[8];
+    private int size;
+    private long armedAt = NOT_ARMED;
+    private boolean running;
+
+    public TimerQueue(Wakeup wakeup) {
+        this.wakeup = wakeup;
+    }
+
+    /** Schedules {@code timer} at {@code deadline}, moving it if it was already scheduled. */
+    public void schedule(Timer timer, long deadline) {
+        if (timer.index >= 0) {
+            long previous = timer.deadline;
+            timer.deadline = deadline;
+            if (deadline < previous) {
+                siftUp(timer.index);
+            } else {
+                siftDown(timer.index);
+            }
+        } else {
+            if (size == heap.length) {
+                Timer[] grown = new Timer[size * 2];
+                System.arraycopy(heap, 0, grown, 0, size);
+                heap = grown;
+            }
+            timer.deadline = deadline;
+            timer.index = size;
+            heap[size++] = timer;
+            siftUp(timer.index);
+        }
+        arm();
+    }
+
+    public void cancel(Timer timer) {
+        int index = timer.index;
+        if (index < 0) {
+            return;
+        }
+        timer.index = -1;
+        Timer last = heap[--size];
+        heap[size] = null;
+        if (index < size) {
+            heap[index] = last;
+            last.index = index;
+            siftDown(index);
+            siftUp(last.index);
+        }
+        arm();
+    }
+
+    /** Runs, in deadline order, every timer due at {@code now}. */
+    public void runDue(long now) {
+        armedAt = NOT_ARMED;
+        running = true;
+        try {
+            while (size > 0 && heap[0].deadline <= now) {
+                Timer timer = heap[0];
+                cancel(timer);
+                timer.task.run();
+            }
+        } finally {
+            running = false;
+        }
+        arm();
+    }
+
+    /** Deadline of the earliest timer, or {@link Long#MAX_VALUE} when none is scheduled. */
+    public long nextDeadline() {
+        return size > 0 ? heap[0].deadline : Long.MAX_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Unschedules every timer and drops the wakeup. */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            heap[i].index = -1;
+            heap[i] = null;
+        }
+        size = 0;
+        arm();
+    }
+
+    private void arm() {
+        if (running) {
+            // runDue arms once all due timers have run
+            return;
+        }
+        if (size == 0) {
+            if (armedAt != NOT_ARMED) {
+                armedAt = NOT_ARMED;
+                wakeup.cancelWakeup();
+            }
+            return;
+        }
+        long deadline = heap[0].deadline;
+        if (deadline != armedAt) {
+            armedAt = deadline;
+            wakeup.wakeAt(deadline);
+        }
+    }
+
+    private void siftUp(int index) {
+        Timer timer = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            Timer above = heap[parent];
+            if (above.deadline <= timer.deadline) {
+                break;
+            }
+            heap[index] = above;
+            above.index = index;
+            index = parent;
+        }
+        heap[index] = timer;
+        timer.index = index;
+    }
+
+    private void siftDown(int index) {
+        Timer timer = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && heap[right].deadline < heap[child].deadline) {
+                child = right;
+            }
+            if (timer.deadline <= heap[child].deadline) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = timer;
+        timer.index = index;
+    }
+}
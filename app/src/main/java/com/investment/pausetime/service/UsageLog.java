@@ -0,0 +1,667 @@
+package com.investment.pausetime.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Append-only log of what happens around each pause: a monitored app was
+ * opened, its pause shown, completed, or abandoned because the user left.
+ * {@link AppMonitoringService} and {@link OverlayService} write it, and
+ * {@link #summarize} reads it back, e.g. for how often a pause made the user
+ * give up on the app.
+ *
+ * Records have a fixed size and live in memory-mapped segment files under
+ * {@code files/usage}. A segment holds {@link #SEGMENT_RECORDS} slots, the
+ * first being its header; once full the next segment is started and only the
+ * newest {@link #MAX_SEGMENTS} with records are kept. Package names are
+ * interned into IDs, listed once each in {@code files/usage/packages}.
+ *
+ * Appending never touches the file system: it stores into the mapped segment,
+ * and switches to the next one, which the log's own thread has already mapped.
+ * That thread also opens the log when it is created, rotates and deletes old
+ * segments, writes new package names, and forces dirty segments to disk at
+ * most {@link #FORCE_INTERVAL} ms after a write. Records appended while
+ * nothing is mapped yet wait in a small fixed buffer.
+ *
+ * Each record's type is stored last and a zero type ends a segment, so a
+ * record cut short by a crash reads as the end of the log. Records never
+ * straddle a page. A crash before a new package name reached the packages
+ * file leaves its ID unnamed, it is never given to another package.
+ *
+ * Thread safe.
+ */
+public final class UsageLog {
+
+    private static final String TAG = "UsageLog";
+
+    public static final int TYPE_APP_OPENED = 1;
+    public static final int TYPE_PAUSE_SHOWN = 2; // Value is how long it stays up, less than the delay if resumed
+    public static final int TYPE_PAUSE_COMPLETED = 3; // Value is the pause length
+    public static final int TYPE_PAUSE_ABANDONED = 4; // Value is how long the pause had run
+
+    static final String DIR_NAME = "usage";
+    static final String PACKAGES_FILE_NAME = "packages";
+    static final int RECORD_SIZE = 32;
+    static final int SEGMENT_RECORDS = 4096; // 128 KB per segment
+    static final int MAX_SEGMENTS = 8;
+    static final long FORCE_INTERVAL = 10_000;
+    // Records held while no segment is mapped, more than that are dropped
+    static final int PENDING_CAPACITY = 64;
+
+    private static final int MAGIC = 0x5054554C; // "PTUL"
+    private static final int VERSION = 1;
+    // Record layout
+    private static final int TIME_OFFSET = 0;
+    private static final int VALUE_OFFSET = 8;
+    private static final int PACKAGE_OFFSET = 16;
+    private static final int TYPE_OFFSET = 28;
+    // Written for IDs a crash left without a name
+    private static final String UNKNOWN_PACKAGE = "?";
+
+    /** Receives records in the order they were written. */
+    public interface Visitor {
+        void visit(long time, int type, int packageId, long value);
+    }
+
+    /** Counts over a time range, see {@link #summarize}. */
+    public static final class Summary {
+        public int appOpens;
+        public int pausesShown;
+        public int pausesCompleted;
+        public int pausesAbandoned;
+        /** Abandoned pauses whose app was not opened again within the return window. */
+        public int gaveUp;
+    }
+
+    private static volatile UsageLog instance;
+
+    private final File directory;
+    private final LongSupplier wallClock;
+    // All file system work, in order
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "UsageLog");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final Runnable forceRunnable = this::forceDirty;
+    private final Runnable rotateRunnable = this::rotate;
+    private final Runnable writeNamesRunnable = this::writeNames;
+
+    // Guarded by this
+    private boolean opened;
+    private boolean failed;
+    private final PackageIds packages = new PackageIds();
+    private int segmentNumber;
+    private MappedByteBuffer segment;
+    private int nextSlot;
+    private MappedByteBuffer spare; // Mapped ahead, the segment after the current one
+    private MappedByteBuffer retired; // Full, waiting to be forced by the rotation
+    private boolean dirty;
+    private boolean forceScheduled;
+    private boolean namesScheduled;
+    private final long[] pendingTime = new long[PENDING_CAPACITY];
+    private final long[] pendingValue = new long[PENDING_CAPACITY];
+    private final int[] pendingType = new int[PENDING_CAPACITY];
+    private final String[] pendingPackage = new String[PENDING_CAPACITY];
+    private int pendingCount;
+    private int droppedCount;
+
+    // Log thread
+    private OutputStream packagesOut;
+    private int namesWritten;
+
+    public static UsageLog getInstance(Context context) {
+        if (instance == null) {
+            synchronized (UsageLog.class) {
+                if (instance == null) {
+                    instance = new UsageLog(new File(context.getApplicationContext().getFilesDir(), DIR_NAME),
+                            System::currentTimeMillis);
+                }
+            }
+        }
+        return instance;
+    }
+
+    UsageLog(File directory, LongSupplier wallClock) {
+        this.directory = directory;
+        this.wallClock = wallClock;
+        executor.execute(this::open);
+    }
+
+    /**
+     * Appends one record stamped with the wall clock. Never blocks on the file
+     * system; only the first record of a package ever seen allocates.
+     */
+    public void append(int type, CharSequence packageName, long value) {
+        long now = wallClock.getAsLong();
+        synchronized (this) {
+            if (failed) {
+                return;
+            }
+            if (!opened || pendingCount > 0 || !hasRoom()) {
+                addPending(now, type, packageName, value);
+                return;
+            }
+            write(now, type, packageId(packageName), value);
+        }
+    }
+
+    /** Forces written records to disk soon, without waiting for the interval. */
+    public void flush() {
+        executor.execute(forceRunnable);
+    }
+
+    /**
+     * Feeds every record written at or after {@code sinceMillis} to
+     * {@code visitor}, oldest first. Segments are read through their mappings,
+     * one record at a time, so the history is never copied onto the heap.
+     * Waits for the log to open, do not call it on the main thread.
+     */
+    public void scan(long sinceMillis, Visitor visitor) {
+        awaitIdle();
+        int current;
+        ByteBuffer currentSegment;
+        int currentLimit;
+        synchronized (this) {
+            if (failed || !opened) {
+                return;
+            }
+            current = segmentNumber;
+            currentSegment = segment.duplicate();
+            // Every slot below this was completed before the lock was released
+            currentLimit = nextSlot;
+        }
+        for (int number : listSegments()) {
+            if (number >= current) {
+                break;
+            }
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile(number), "r")) {
+                ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                if (isValidSegment(buffer)) {
+                    scanSegment(buffer, SEGMENT_RECORDS, sinceMillis, visitor);
+                }
+            } catch (IOException e) {
+                // Deleted by a rotation while scanning, or unreadable, skip it
+                Log.w(TAG, "Skipping usage segment " + number, e);
+            }
+        }
+        scanSegment(currentSegment, currentLimit, sinceMillis, visitor);
+    }
+
+    /**
+     * Counts the records since {@code sinceMillis}. A pause counts as given up
+     * if its app was not opened again within {@code returnWindowMillis}; pauses
+     * abandoned less than that ago are not decided yet and not counted.
+     */
+    public Summary summarize(long sinceMillis, long returnWindowMillis) {
+        SummaryVisitor visitor = new SummaryVisitor(returnWindowMillis);
+        scan(sinceMillis, visitor);
+        long now = wallClock.getAsLong();
+        for (long time : visitor.abandonedAt) {
+            if (time != 0 && now - time > returnWindowMillis) {
+                visitor.summary.gaveUp++;
+            }
+        }
+        return visitor.summary;
+    }
+
+    /** Name of a package ID passed to a {@link Visitor}. */
+    public synchronized String getPackageName(int packageId) {
+        return packageId < packages.size() ? packages.getName(packageId) : null;
+    }
+
+    /** Bytes on disk, for the debug screen. */
+    public long getSizeBytes() {
+        File[] files = directory.listFiles();
+        long bytes = 0;
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    /** Blocks until the log thread has done everything asked of it so far, apart from delayed forces. */
+    void awaitIdle() {
+        try {
+            executor.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Holding the lock
+    private boolean hasRoom() {
+        return nextSlot < SEGMENT_RECORDS || spare != null;
+    }
+
+    // Holding the lock
+    private int packageId(CharSequence packageName) {
+        int packageId = packages.find(packageName);
+        if (packageId == PackageIds.NONE) {
+            packageId = packages.intern(packageName);
+            if (!namesScheduled) {
+                namesScheduled = true;
+                executor.execute(writeNamesRunnable);
+            }
+        }
+        return packageId;
+    }
+
+    // Holding the lock, with room for the record
+    private void write(long time, int type, int packageId, long value) {
+        if (nextSlot == SEGMENT_RECORDS) {
+            // Mapped and given its header on the log thread, switching is only a few stores
+            retired = segment;
+            segment = spare;
+            spare = null;
+            segmentNumber++;
+            nextSlot = 1;
+            executor.execute(rotateRunnable);
+        }
+        int offset = nextSlot++ * RECORD_SIZE;
+        segment.putLong(offset + TIME_OFFSET, time);
+        segment.putLong(offset + VALUE_OFFSET, value);
+        segment.putInt(offset + PACKAGE_OFFSET, packageId);
+        // Last, so a torn record never looks complete
+        segment.putInt(offset + TYPE_OFFSET, type);
+        dirty = true;
+        if (!forceScheduled) {
+            forceScheduled = true;
+            executor.schedule(forceRunnable, FORCE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Holding the lock. Keeps the name as a String, IDs are only known once the log is open.
+    private void addPending(long time, int type, CharSequence packageName, long value) {
+        if (pendingCount == PENDING_CAPACITY) {
+            droppedCount++;
+            return;
+        }
+        int i = pendingCount++;
+        pendingTime[i] = time;
+        pendingType[i] = type;
+        pendingPackage[i] = packageName.toString();
+        pendingValue[i] = value;
+    }
+
+    // Holding the lock, on the log thread
+    private void drainPending() {
+        int drained = 0;
+        while (drained < pendingCount && hasRoom()) {
+            write(pendingTime[drained], pendingType[drained], packageId(pendingPackage[drained]),
+                    pendingValue[drained]);
+            drained++;
+        }
+        int left = pendingCount - drained;
+        System.arraycopy(pendingTime, drained, pendingTime, 0, left);
+        System.arraycopy(pendingValue, drained, pendingValue, 0, left);
+        System.arraycopy(pendingType, drained, pendingType, 0, left);
+        System.arraycopy(pendingPackage, drained, pendingPackage, 0, left);
+        Arrays.fill(pendingPackage, left, pendingCount, null);
+        pendingCount = left;
+        if (droppedCount > 0) {
+            Log.w(TAG, "Dropped " + droppedCount + " usage records while no segment was mapped");
+            droppedCount = 0;
+        }
+    }
+
+    // Log thread
+    private void open() {
+        List<String> names;
+        int number = 1;
+        MappedByteBuffer buffer = null;
+        int slot = SEGMENT_RECORDS;
+        MappedByteBuffer ahead = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            File packagesFile = new File(directory, PACKAGES_FILE_NAME);
+            names = loadPackages(packagesFile);
+            packagesOut = new FileOutputStream(packagesFile, true);
+            int[] segments = listSegments();
+            // Give IDs recorded without a name a placeholder, so they are not reused
+            int maxId = maxPackageId(segments);
+            if (maxId >= names.size()) {
+                StringBuilder missing = new StringBuilder();
+                while (names.size() <= maxId) {
+                    names.add(UNKNOWN_PACKAGE);
+                    missing.append(UNKNOWN_PACKAGE).append('\n');
+                }
+                packagesOut.write(missing.toString().getBytes(StandardCharsets.UTF_8));
+                packagesOut.flush();
+            }
+            namesWritten = names.size();
+            if (segments.length > 0) {
+                int last = segments[segments.length - 1];
+                MappedByteBuffer lastBuffer = map(segmentFile(last));
+                boolean lastValid = isValidSegment(lastBuffer);
+                // An empty newest segment was mapped ahead by the last process, keep it for later
+                if (lastValid && firstFreeSlot(lastBuffer) == 1 &&
+                        segments.length > 1 && segments[segments.length - 2] == last - 1) {
+                    MappedByteBuffer previous = map(segmentFile(last - 1));
+                    if (isValidSegment(previous)) {
+                        number = last - 1;
+                        buffer = previous;
+                        slot = firstFreeSlot(previous);
+                        ahead = lastBuffer;
+                    }
+                }
+                if (buffer == null) {
+                    number = last;
+                    buffer = lastBuffer;
+                    slot = lastValid ? firstFreeSlot(lastBuffer) : SEGMENT_RECORDS;
+                }
+            }
+            if (slot == SEGMENT_RECORDS) {
+                if (ahead != null) {
+                    number++;
+                    buffer = ahead;
+                    ahead = null;
+                } else {
+                    // Missing, torn or full, start the next one
+                    number = buffer == null ? 1 : number + 1;
+                    buffer = mapNewSegment(number);
+                }
+                slot = 1;
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                fail(e);
+            }
+            return;
+        }
+        synchronized (this) {
+            for (String name : names) {
+                packages.intern(name);
+            }
+            segmentNumber = number;
+            segment = buffer;
+            nextSlot = slot;
+            spare = ahead;
+            opened = true;
+            drainPending();
+        }
+        rotate();
+    }
+
+    // Log thread. Forces the segment just filled, deletes the oldest and maps the next one.
+    private void rotate() {
+        MappedByteBuffer full;
+        int current;
+        boolean needsSpare;
+        synchronized (this) {
+            full = retired;
+            retired = null;
+            current = segmentNumber;
+            needsSpare = spare == null;
+        }
+        if (full != null) {
+            full.force();
+        }
+        for (int old : listSegments()) {
+            if (old <= current - MAX_SEGMENTS) {
+                if (!segmentFile(old).delete()) {
+                    Log.w(TAG, "Could not delete usage segment " + old);
+                }
+            }
+        }
+        if (!needsSpare) {
+            return;
+        }
+        MappedByteBuffer buffer;
+        try {
+            buffer = mapNewSegment(current + 1);
+        } catch (IOException e) {
+            synchronized (this) {
+                fail(e);
+            }
+            return;
+        }
+        synchronized (this) {
+            spare = buffer;
+            drainPending();
+        }
+    }
+
+    // Log thread. The names interned since the last call, in ID order.
+    private void writeNames() {
+        StringBuilder names = new StringBuilder();
+        synchronized (this) {
+            namesScheduled = false;
+            for (int id = namesWritten; id < packages.size(); id++) {
+                names.append(packages.getName(id)).append('\n');
+            }
+            namesWritten = packages.size();
+        }
+        try {
+            packagesOut.write(names.toString().getBytes(StandardCharsets.UTF_8));
+            packagesOut.flush();
+        } catch (IOException e) {
+            synchronized (this) {
+                fail(e);
+            }
+        }
+    }
+
+    // Log thread. Only names ending in a newline count, a torn last line is cut off.
+    private static List<String> loadPackages(File file) throws IOException {
+        List<String> names = new ArrayList<>();
+        if (!file.exists()) {
+            return names;
+        }
+        byte[] bytes = readFully(file);
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                names.add(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        if (start < bytes.length) {
+            try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                truncate.setLength(start);
+            }
+        }
+        return names;
+    }
+
+    // Log thread
+    private int maxPackageId(int[] segments) {
+        int max = -1;
+        for (int number : segments) {
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile(number), "r")) {
+                ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                if (!isValidSegment(buffer)) {
+                    continue;
+                }
+                for (int slot = 1; slot < SEGMENT_RECORDS; slot++) {
+                    int offset = slot * RECORD_SIZE;
+                    if (buffer.getInt(offset + TYPE_OFFSET) == 0) {
+                        break;
+                    }
+                    max = Math.max(max, buffer.getInt(offset + PACKAGE_OFFSET));
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Skipping usage segment " + number, e);
+            }
+        }
+        return max;
+    }
+
+    private static int firstFreeSlot(ByteBuffer buffer) {
+        int slot = 1;
+        while (slot < SEGMENT_RECORDS && buffer.getInt(slot * RECORD_SIZE + TYPE_OFFSET) != 0) {
+            slot++;
+        }
+        return slot;
+    }
+
+    private MappedByteBuffer mapNewSegment(int number) throws IOException {
+        MappedByteBuffer buffer = map(segmentFile(number));
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putInt(12, SEGMENT_RECORDS);
+        return buffer;
+    }
+
+    // Log thread
+    private void forceDirty() {
+        MappedByteBuffer toForce;
+        synchronized (this) {
+            forceScheduled = false;
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toForce = segment;
+        }
+        // Outside the lock, writers keep storing while the pages are written back
+        toForce.force();
+    }
+
+    // Holding the lock. Writing stops for the rest of the process, the log is best effort.
+    private void fail(IOException e) {
+        Log.e(TAG, "Usage log disabled", e);
+        failed = true;
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, String.format(Locale.US, "usage-%06d.seg", number));
+    }
+
+    /** Segment numbers on disk, ascending. */
+    private int[] listSegments() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new int[0];
+        }
+        List<Integer> numbers = new ArrayList<>();
+        for (String name : names) {
+            if (name.startsWith("usage-") && name.endsWith(".seg")) {
+                try {
+                    numbers.add(Integer.parseInt(name.substring(6, name.length() - 4)));
+                } catch (NumberFormatException e) {
+                    // Not ours
+                }
+            }
+        }
+        int[] sorted = new int[numbers.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = numbers.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        // The mapping stays valid once the file is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength((long) SEGMENT_RECORDS * RECORD_SIZE);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+    }
+
+    private static boolean isValidSegment(ByteBuffer buffer) {
+        return buffer.capacity() == SEGMENT_RECORDS * RECORD_SIZE &&
+                buffer.getInt(0) == MAGIC &&
+                buffer.getInt(4) == VERSION &&
+                buffer.getInt(8) == RECORD_SIZE;
+    }
+
+    private static void scanSegment(ByteBuffer buffer, int limit, long sinceMillis, Visitor visitor) {
+        for (int slot = 1; slot < limit; slot++) {
+            int offset = slot * RECORD_SIZE;
+            int type = buffer.getInt(offset + TYPE_OFFSET);
+            if (type == 0) {
+                return;
+            }
+            long time = buffer.getLong(offset + TIME_OFFSET);
+            if (time >= sinceMillis) {
+                visitor.visit(time, type, buffer.getInt(offset + PACKAGE_OFFSET),
+                        buffer.getLong(offset + VALUE_OFFSET));
+            }
+        }
+    }
+
+    private static final class SummaryVisitor implements Visitor {
+        final Summary summary = new Summary();
+        final long returnWindowMillis;
+        // Time of the last abandoned pause per package ID, 0 once decided
+        long[] abandonedAt = new long[16];
+
+        SummaryVisitor(long returnWindowMillis) {
+            this.returnWindowMillis = returnWindowMillis;
+        }
+
+        @Override
+        public void visit(long time, int type, int packageId, long value) {
+            if (packageId >= abandonedAt.length) {
+                abandonedAt = Arrays.copyOf(abandonedAt, Math.max(packageId + 1, abandonedAt.length * 2));
+            }
+            switch (type) {
+                case TYPE_APP_OPENED:
+                    summary.appOpens++;
+                    if (abandonedAt[packageId] != 0) {
+                        if (time - abandonedAt[packageId] > returnWindowMillis) {
+                            summary.gaveUp++;
+                        }
+                        abandonedAt[packageId] = 0;
+                    }
+                    break;
+                case TYPE_PAUSE_SHOWN:
+                    summary.pausesShown++;
+                    break;
+                case TYPE_PAUSE_COMPLETED:
+                    summary.pausesCompleted++;
+                    break;
+                case TYPE_PAUSE_ABANDONED:
+                    summary.pausesAbandoned++;
+                    abandonedAt[packageId] = time;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
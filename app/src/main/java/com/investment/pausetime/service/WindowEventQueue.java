@@ -0,0 +1,109 @@
+package com.investment.pausetime.service;
+
+/**
+ * Bounded hand-off between the accessibility callback and the event thread.
+ * Only the latest event per package is kept: a package that fires again while
+ * still queued is moved to the tail with the newer time, so a burst from one
+ * app collapses into a single entry while the order of different apps is kept.
+ * When full, the oldest package is dropped.
+ *
+ * Entries are preallocated slots, oldest first, and {@link #poll(Event)}
+ * copies into the caller's event, so neither side allocates. Package and
+ * class names are kept as the CharSequences the accessibility event handed
+ * out; the event is recycled after the callback but they are not.
+ */
+class WindowEventQueue {
+
+    static final class Event {
+        CharSequence packageName;
+        // Only filled in while an event trace is recorded
+        CharSequence className;
+        int windowId;
+        long eventTime;
+
+        void clear() {
+            packageName = null;
+            className = null;
+        }
+    }
+
+    private final Event[] events;
+    private int size;
+    private int coalescedCount;
+    private int droppedCount;
+
+    WindowEventQueue(int capacity) {
+        events = new Event[capacity];
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new Event();
+        }
+    }
+
+    /**
+     * Queues an event. Returns true if the queue was empty, meaning the caller
+     * has to schedule a drain.
+     */
+    synchronized boolean offer(CharSequence packageName, CharSequence className, int windowId,
+                               long eventTime) {
+        boolean wasEmpty = size == 0;
+        Event event = null;
+        for (int i = 0; i < size; i++) {
+            if (PackageIds.contentEquals(events[i].packageName, packageName)) {
+                event = moveToTail(i);
+                coalescedCount++;
+                break;
+            }
+        }
+        if (event == null) {
+            if (size == events.length) {
+                event = moveToTail(0);
+                droppedCount++;
+            } else {
+                event = events[size++];
+            }
+            event.packageName = packageName;
+        }
+        event.className = className;
+        event.windowId = windowId;
+        event.eventTime = eventTime;
+        return wasEmpty;
+    }
+
+    /** Moves the oldest queued event into {@code into}. Returns false if empty. */
+    synchronized boolean poll(Event into) {
+        if (size == 0) {
+            return false;
+        }
+        Event head = moveToTail(0);
+        into.packageName = head.packageName;
+        into.className = head.className;
+        into.windowId = head.windowId;
+        into.eventTime = head.eventTime;
+        head.clear();
+        size--;
+        return true;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            events[i].clear();
+        }
+        size = 0;
+    }
+
+    synchronized int getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    synchronized int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /** Shifts the slots after {@code index} forward and puts its slot last. */
+    private Event moveToTail(int index) {
+        Event event = events[index];
+        System.arraycopy(events, index + 1, events, index, size - index - 1);
+        events[size - 1] = event;
+        return event;
+    }
+}
@@ -0,0 +1,132 @@
+package com.investment.pausetime.utils;
+
+import com.investment.pausetime.model.AppInfo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Search index over the app picker's list. Names are normalized once:
+ * lower-cased and accent-folded, so "cafe" finds "Café". Apps whose name or
+ * one of its words starts with the query come first, then those containing it
+ * anywhere, each group in list order.
+ *
+ * A {@link Result} remembers what it matched, and a query that extends the
+ * previous one only rechecks those apps. Immutable after construction and
+ * safe to use from any thread.
+ */
+public class AppSearchIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    /** Matches of one query, as positions into the indexed list. */
+    public static final class Result {
+        final AppSearchIndex index;
+        final String query;
+        final int[] matches;
+
+        Result(AppSearchIndex index, String query, int[] matches) {
+            this.index = index;
+            this.query = query;
+            this.matches = matches;
+        }
+
+        public int size() {
+            return matches.length;
+        }
+    }
+
+    private final List<AppInfo> apps;
+    private final String[] keys;
+
+    public AppSearchIndex(List<AppInfo> apps) {
+        this.apps = Collections.unmodifiableList(new ArrayList<>(apps));
+        this.keys = new String[apps.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = normalize(apps.get(i).getAppName());
+        }
+    }
+
+    public List<AppInfo> getApps() {
+        return apps;
+    }
+
+    /**
+     * Matches {@code query}. {@code previous} may be the result of an earlier
+     * call; if it came from this index and its query is a prefix of this one,
+     * only its matches are rechecked.
+     */
+    public Result search(String query, Result previous) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            int[] all = new int[apps.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return new Result(this, normalized, all);
+        }
+
+        int[] candidates = null;
+        if (previous != null && previous.index == this && normalized.startsWith(previous.query)) {
+            candidates = previous.matches.clone();
+            // Ranked order is not list order, restore it before regrouping
+            Arrays.sort(candidates);
+        }
+        int count = candidates != null ? candidates.length : keys.length;
+
+        int[] prefix = new int[count];
+        int[] substring = new int[count];
+        int prefixCount = 0;
+        int substringCount = 0;
+        for (int c = 0; c < count; c++) {
+            int i = candidates != null ? candidates[c] : c;
+            int at = keys[i].indexOf(normalized);
+            if (at < 0) {
+                continue;
+            }
+            if (at == 0 || isWordStart(keys[i], normalized)) {
+                prefix[prefixCount++] = i;
+            } else {
+                substring[substringCount++] = i;
+            }
+        }
+        int[] matches = Arrays.copyOf(prefix, prefixCount + substringCount);
+        System.arraycopy(substring, 0, matches, prefixCount, substringCount);
+        return new Result(this, normalized, matches);
+    }
+
+    public List<AppInfo> toList(Result result) {
+        List<AppInfo> list = new ArrayList<>(result.matches.length);
+        for (int i : result.matches) {
+            list.add(apps.get(i));
+        }
+        return list;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .toLowerCase(Locale.ROOT)
+                .trim();
+    }
+
+    private static boolean isWordStart(String key, String query) {
+        int from = 0;
+        int at;
+        while ((at = key.indexOf(query, from)) > 0) {
+            if (!Character.isLetterOrDigit(key.charAt(at - 1))) {
+                return true;
+            }
+            from = at + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,257 @@
+package com.investment.pausetime.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App-wide cache of app icons, downscaled to the largest size the app shows
+ * them at. Backed by an in-memory LRU sized in bytes and by PNG files in the
+ * cache directory keyed by package and {@code lastUpdateTime}, so an updated
+ * app gets its new icon while unchanged ones skip the full-size decode
+ * entirely. A memory hit needs no package manager call at all; package
+ * broadcasts drop the entries of apps that were updated or removed.
+ *
+ * {@link #getCached} is safe on the main thread; everything that may touch
+ * the package manager or disk runs on the cache's own background threads, or
+ * in {@link #loadBlocking} on the caller's worker thread.
+ */
+public class IconCache {
+
+    private static final String TAG = "IconCache";
+    private static final String DIR_NAME = "icons";
+    private static final int ICON_SIZE_DP = 72; // Pause screen icon, the largest one shown
+    private static final int MAX_MEMORY_BYTES = 8 * 1024 * 1024;
+
+    public interface Callback {
+        /** Called on the main thread. {@code icon} is null if the app has none or is gone. */
+        void onIconLoaded(String packageName, Bitmap icon);
+    }
+
+    /** Handle of a pending {@link #load}. */
+    public static final class Request {
+        private volatile boolean cancelled;
+
+        /** Skips the load if it has not started and drops the callback. */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static volatile IconCache instance;
+
+    private final PackageManager packageManager;
+    private final File directory;
+    private final int iconSizePx;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // One per package while it loads, so concurrent loads render and write its file once
+    private final ConcurrentHashMap<String, PackageLock> packageLocks = new ConcurrentHashMap<>();
+    // Bumped by each package broadcast, a load that saw a different value does not cache
+    private final AtomicInteger invalidations = new AtomicInteger();
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+            invalidations.incrementAndGet();
+            memoryCache.remove(data.getSchemeSpecificPart());
+        }
+    };
+
+    public static IconCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (IconCache.class) {
+                if (instance == null) {
+                    instance = new IconCache(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private IconCache(Context context) {
+        packageManager = context.getPackageManager();
+        directory = new File(context.getCacheDir(), DIR_NAME);
+        iconSizePx = Math.round(ICON_SIZE_DP * context.getResources().getDisplayMetrics().density);
+        int maxBytes = (int) Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 16);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+        executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "IconCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        context.registerReceiver(packageReceiver, filter);
+    }
+
+    /** Icon from memory, or null. Never blocks. */
+    public Bitmap getCached(String packageName) {
+        return memoryCache.get(packageName);
+    }
+
+    /** Loads the icon in the background and delivers it on the main thread. */
+    public Request load(String packageName, Callback callback) {
+        Request request = new Request();
+        executor.execute(() -> {
+            if (request.cancelled) {
+                return;
+            }
+            Bitmap icon = loadBlocking(packageName);
+            if (callback != null) {
+                mainHandler.post(() -> {
+                    if (!request.cancelled) {
+                        callback.onIconLoaded(packageName, icon);
+                    }
+                });
+            }
+        });
+        return request;
+    }
+
+    /** Warms the memory cache, e.g. while a pause is scheduled but not yet shown. */
+    public void prefetch(String packageName) {
+        load(packageName, null);
+    }
+
+    /**
+     * Returns the icon from memory, disk, or the package manager, in that
+     * order. Must not be called on the main thread.
+     */
+    public Bitmap loadBlocking(String packageName) {
+        Bitmap cached = memoryCache.get(packageName);
+        if (cached != null) {
+            return cached;
+        }
+        PackageLock lock = packageLocks.compute(packageName, (key, current) -> {
+            PackageLock acquired = current != null ? current : new PackageLock();
+            acquired.users++;
+            return acquired;
+        });
+        try {
+            // A second load of the same package waits here and then finds the first one's result
+            synchronized (lock) {
+                return loadLocked(packageName);
+            }
+        } finally {
+            packageLocks.computeIfPresent(packageName,
+                    (key, current) -> --current.users == 0 ? null : current);
+        }
+    }
+
+    // Holds the package's lock
+    private Bitmap loadLocked(String packageName) {
+        Bitmap bitmap = memoryCache.get(packageName);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        int generation = invalidations.get();
+        long lastUpdateTime;
+        try {
+            PackageInfo info = packageManager.getPackageInfo(packageName, 0);
+            lastUpdateTime = info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+
+        File file = fileFor(packageName, lastUpdateTime);
+        bitmap = file.exists() ? BitmapFactory.decodeFile(file.getPath()) : null;
+        if (bitmap == null) {
+            bitmap = render(packageName);
+            if (bitmap == null) {
+                return null;
+            }
+            write(packageName, file, bitmap);
+        }
+        // An update broadcast during the load may have made this icon stale
+        if (invalidations.get() == generation) {
+            memoryCache.put(packageName, bitmap);
+        }
+        return bitmap;
+    }
+
+    private Bitmap render(String packageName) {
+        Drawable drawable;
+        try {
+            drawable = packageManager.getApplicationIcon(packageName);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(iconSizePx, iconSizePx, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, iconSizePx, iconSizePx);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    // Holds the package's lock, nothing else writes or sweeps its files meanwhile
+    private void write(String packageName, File file, Bitmap bitmap) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        // Drop icons of earlier versions of this package
+        String prefix = packageName + "@";
+        File[] stale = directory.listFiles((dir, name) -> name.startsWith(prefix));
+        if (stale != null) {
+            for (File old : stale) {
+                old.delete();
+            }
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write icon for " + packageName, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    private File fileFor(String packageName, long lastUpdateTime) {
+        return new File(directory, packageName + "@" + lastUpdateTime + ".png");
+    }
+
+    /** Counted so the map entry goes once no load of the package holds it. */
+    private static final class PackageLock {
+        int users; // Only changed inside the map's compute calls
+    }
+}
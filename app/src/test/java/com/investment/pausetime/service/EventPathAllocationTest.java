@@ -0,0 +1,132 @@
+package com.investment.pausetime.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Counts the bytes the event thread allocates once every package has been
+ * seen: queue hand-off, decision and timers must not allocate at all. Package
+ * names are passed as StringBuilders, like the non-String CharSequences an
+ * accessibility event may carry, so any hidden toString() shows up.
+ */
+public class EventPathAllocationTest {
+
+    private static final String OWN = "com.investment.pausetime";
+    private static final int EVENTS = 200_000;
+    // Covers the allocation counter's own bookkeeping, one byte per event would be far above
+    private static final long MAX_BYTES = 1024;
+
+    private final Map<String, MonitoredApp> config = new HashMap<>();
+    private final VirtualScheduler scheduler = new VirtualScheduler(1_000_000);
+    private final WindowEventQueue queue = new WindowEventQueue(16);
+    private final WindowEventQueue.Event polled = new WindowEventQueue.Event();
+    private OverlayStateMachine machine;
+    private CharSequence[] sequence;
+    private long[] gaps;
+
+    @Test
+    public void steadyStateEventPathDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = threads();
+        setUp();
+        // First pass interns every package, grows the arrays and warms up the JIT
+        run(EVENTS);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        run(EVENTS);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(allocated + " bytes allocated for " + EVENTS + " events", allocated < MAX_BYTES);
+    }
+
+    @Test
+    public void charSequenceLookupMatchesInternedName() {
+        PackageIds ids = new PackageIds();
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, ids.intern("com.example.app" + i));
+        }
+        int id = ids.find(new StringBuilder("com.example.app123"));
+        assertEquals(123, id);
+        assertSame(ids.getName(id), ids.getName(ids.intern(new StringBuilder("com.example.app123"))));
+        assertEquals(PackageIds.NONE, ids.find(new StringBuilder("com.example.app")));
+        assertEquals(500, ids.size());
+    }
+
+    private void setUp() {
+        for (int i = 0; i < 20; i++) {
+            String packageName = "com.example.app" + i;
+            config.put(packageName, new MonitoredApp(packageName, "Example App " + i, 1 + i, i % 7 != 0));
+        }
+        machine = new OverlayStateMachine(new OverlayDecisionEngine(OWN, config::get),
+                scheduler, scheduler.queue, new OverlayStateMachine.Listener() {
+                    @Override
+                    public long onShowOverlay(MonitoredApp app, long eventTime, long decisionTime) {
+                        return app.getDelaySeconds() * 1000L;
+                    }
+
+                    @Override
+                    public void onDismissOverlay(String packageName) {
+                    }
+
+                    @Override
+                    public void onShowDropped(String packageName, long eventTime) {
+                    }
+
+                    @Override
+                    public void onStateChanged() {
+                    }
+                });
+
+        // Monitored apps, the launcher, our own app and unmonitored apps, mostly faster than the show delay
+        Random random = new Random(3);
+        sequence = new CharSequence[4096];
+        gaps = new long[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            int pick = random.nextInt(20);
+            String packageName;
+            if (pick < 5) {
+                packageName = "com.android.launcher3";
+            } else if (pick < 12) {
+                packageName = "com.example.app" + random.nextInt(20);
+            } else if (pick < 13) {
+                packageName = OWN;
+            } else {
+                packageName = "com.other.app" + random.nextInt(100);
+            }
+            sequence[i] = new StringBuilder(packageName);
+            gaps[i] = random.nextInt(10) == 0 ? random.nextInt(20_000) : random.nextInt(600);
+        }
+    }
+
+    private void run(int events) {
+        for (int i = 0; i < events; i++) {
+            int index = i & (sequence.length - 1);
+            // Two offers per drain so coalescing is exercised too
+            queue.offer(sequence[index], null, i, scheduler.uptimeMillis());
+            queue.offer(sequence[(index + 1) & (sequence.length - 1)], null, i, scheduler.uptimeMillis());
+            while (queue.poll(polled)) {
+                machine.onWindowStateChanged(polled.packageName, polled.eventTime);
+            }
+            scheduler.advance(gaps[index]);
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocation.isThreadAllocatedMemorySupported());
+        allocation.setThreadAllocatedMemoryEnabled(true);
+        return allocation;
+    }
+}
@@ -0,0 +1,153 @@
+package com.investment.pausetime.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link EventTrace} round trips, and replay of recorded traces kept under
+ * {@code src/test/resources/traces} as regression fixtures.
+ */
+public class EventTraceTest {
+
+    private static final String OWN = "com.investment.pausetime";
+
+    @Test
+    public void roundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventTrace.Writer writer = new EventTrace.Writer(bytes, 1_000);
+        writer.writeApp("com.example.video", 30, true);
+        writer.writeEvent(1_500, "com.example.video", "com.example.MainActivity", 12,
+                OverlayDecisionEngine.Reason.SCHEDULED, false, false);
+        // Times are not guaranteed to be monotonic across coalesced events
+        writer.writeEvent(1_400, "com.example.video", null, -1,
+                OverlayDecisionEngine.Reason.DEBOUNCED, true, true);
+        writer.writeApp("com.example.video", 30, false);
+        writer.close();
+
+        EventTrace.Reader reader = new EventTrace.Reader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(reader.next());
+        assertEquals(EventTrace.KIND_APP, reader.kind);
+        assertEquals("com.example.video", reader.packageName);
+        assertEquals(30, reader.delaySeconds);
+        assertTrue(reader.enabled);
+
+        assertTrue(reader.next());
+        assertEquals(EventTrace.KIND_EVENT, reader.kind);
+        assertEquals(1_500, reader.eventTime);
+        assertEquals("com.example.video", reader.packageName);
+        assertEquals("com.example.MainActivity", reader.className);
+        assertEquals(12, reader.windowId);
+        assertEquals(OverlayDecisionEngine.Reason.SCHEDULED, reader.reason);
+        assertFalse(reader.dismissed);
+        assertFalse(reader.cancelled);
+
+        assertTrue(reader.next());
+        assertEquals(1_400, reader.eventTime);
+        assertNull(reader.className);
+        assertEquals(-1, reader.windowId);
+        assertEquals(OverlayDecisionEngine.Reason.DEBOUNCED, reader.reason);
+        assertTrue(reader.dismissed);
+        assertTrue(reader.cancelled);
+
+        assertTrue(reader.next());
+        assertFalse(reader.enabled);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void recordCutShortEndsTrace() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventTrace.Writer writer = new EventTrace.Writer(bytes, 0);
+        writer.writeEvent(10, "com.example.video", "com.example.MainActivity", 1,
+                OverlayDecisionEngine.Reason.NOT_MONITORED, false, false);
+        writer.close();
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+
+        EventTrace.Reader reader = new EventTrace.Reader(new ByteArrayInputStream(truncated));
+        assertFalse(reader.next());
+    }
+
+    /**
+     * YouTube's picture-in-picture window reports window changes while the
+     * user is on the home screen, scheduling overlays that are cancelled again
+     * right away.
+     */
+    @Test
+    public void replayYouTubePictureInPicture() throws IOException {
+        int scheduled = replay("traces/youtube-pip.trace");
+        assertEquals(6, scheduled);
+    }
+
+    /**
+     * Feeds a trace through {@link OverlayStateMachine} at virtual time and
+     * checks every decision matches the recorded one. Returns how many events
+     * scheduled an overlay.
+     */
+    private int replay(String resource) throws IOException {
+        Map<String, MonitoredApp> config = new HashMap<>();
+        VirtualScheduler scheduler = new VirtualScheduler(0);
+        OverlayStateMachine machine = new OverlayStateMachine(
+                new OverlayDecisionEngine(OWN, config::get), scheduler, scheduler.queue,
+                new OverlayStateMachine.Listener() {
+                    @Override
+                    public long onShowOverlay(MonitoredApp app, long eventTime, long decisionTime) {
+                        return app.getDelaySeconds() * 1000L;
+                    }
+
+                    @Override
+                    public void onDismissOverlay(String packageName) {
+                    }
+
+                    @Override
+                    public void onShowDropped(String packageName, long eventTime) {
+                    }
+
+                    @Override
+                    public void onStateChanged() {
+                    }
+                });
+
+        int events = 0;
+        int scheduled = 0;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            assertNotNull(resource, in);
+            EventTrace.Reader reader = new EventTrace.Reader(in);
+            while (reader.next()) {
+                if (reader.kind == EventTrace.KIND_APP) {
+                    config.put(reader.packageName, new MonitoredApp(reader.packageName,
+                            reader.packageName, reader.delaySeconds, reader.enabled));
+                    machine.invalidateMonitoredApps();
+                    continue;
+                }
+                scheduler.advanceTo(reader.eventTime);
+                OverlayDecisionEngine.Decision decision =
+                        machine.onWindowStateChanged(reader.packageName, reader.eventTime);
+                String at = "event " + events + " (" + reader.packageName + ")";
+                assertEquals(at, reader.reason, decision.getReason());
+                assertEquals(at, reader.dismissed, decision.getDismissPackage() != null);
+                assertEquals(at, reader.cancelled, decision.getCancelPackage() != null);
+                if (decision.getScheduledApp() != null) {
+                    scheduled++;
+                }
+                events++;
+            }
+        }
+        assertTrue(events > 0);
+        return scheduled;
+    }
+}
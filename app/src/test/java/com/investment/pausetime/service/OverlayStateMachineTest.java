@@ -0,0 +1,198 @@
+package com.investment.pausetime.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Drives {@link OverlayStateMachine} with a virtual clock, including long runs
+ * of random app switches faster than the show delay.
+ */
+public class OverlayStateMachineTest {
+
+    private static final String OWN = "com.investment.pausetime";
+    private static final String HOME = "com.example.home";
+    private static final String MONITORED = "com.example.video";
+    private static final String OTHER = "com.example.notes";
+
+    private final Map<String, MonitoredApp> config = new HashMap<>();
+    private final List<String> effects = new ArrayList<>();
+    private VirtualScheduler scheduler;
+    private OverlayStateMachine machine;
+    private String shownPackage;
+    private long shownUntil;
+    private String foreground;
+    // What is left of a suspended pause the next show resumes, 0 for a new pause
+    private long resumedRemaining;
+
+    @Before
+    public void setUp() {
+        config.put(MONITORED, new MonitoredApp(MONITORED, "Video", 10, true));
+        config.put("com.example.social", new MonitoredApp("com.example.social", "Social", 5, true));
+        config.put("com.example.disabled", new MonitoredApp("com.example.disabled", "Off", 5, false));
+        scheduler = new VirtualScheduler(1_000_000);
+        machine = new OverlayStateMachine(new OverlayDecisionEngine(OWN, config::get),
+                scheduler, scheduler.queue, new OverlayStateMachine.Listener() {
+                    @Override
+                    public long onShowOverlay(MonitoredApp app, long eventTime, long decisionTime) {
+                        effects.add("show " + app.getPackageName());
+                        // Never over an app the user is not in, never two at once
+                        assertEquals(foreground, app.getPackageName());
+                        assertNull(currentOverlay());
+                        long duration = resumedRemaining > 0 ? resumedRemaining : app.getDelaySeconds() * 1000L;
+                        resumedRemaining = 0;
+                        shownPackage = app.getPackageName();
+                        shownUntil = scheduler.uptimeMillis() + duration;
+                        return duration;
+                    }
+
+                    @Override
+                    public void onDismissOverlay(String packageName) {
+                        effects.add("dismiss " + packageName);
+                        shownPackage = null;
+                    }
+
+                    @Override
+                    public void onShowDropped(String packageName, long eventTime) {
+                        effects.add("drop " + packageName);
+                    }
+
+                    @Override
+                    public void onStateChanged() {
+                    }
+                });
+    }
+
+    @Test
+    public void showsAfterDelayWhenUserStays() {
+        switchTo(MONITORED);
+        assertTrue(machine.isShowPending());
+        scheduler.advance(OverlayStateMachine.SHOW_DELAY);
+        assertEquals(Arrays.asList("show " + MONITORED), effects);
+        assertFalse(machine.isShowPending());
+    }
+
+    @Test
+    public void leavingBeforeDelayCancelsShow() {
+        switchTo(MONITORED);
+        scheduler.advance(OverlayStateMachine.SHOW_DELAY - 100);
+        switchTo(HOME);
+        scheduler.advance(10_000);
+        assertEquals(Arrays.asList("drop " + MONITORED), effects);
+        assertFalse(machine.isWatchingForExit());
+    }
+
+    @Test
+    public void leavingShownOverlayDismissesIt() {
+        switchTo(MONITORED);
+        scheduler.advance(OverlayStateMachine.SHOW_DELAY);
+        switchTo(OTHER);
+        assertEquals(Arrays.asList("show " + MONITORED, "dismiss " + MONITORED), effects);
+    }
+
+    @Test
+    public void reopeningAfterLeavingShowsAgain() {
+        switchTo(MONITORED);
+        scheduler.advance(OverlayStateMachine.SHOW_DELAY);
+        switchTo(HOME);
+        switchTo(MONITORED);
+        scheduler.advance(OverlayStateMachine.SHOW_DELAY);
+        assertEquals(Arrays.asList("show " + MONITORED, "dismiss " + MONITORED, "show " + MONITORED), effects);
+    }
+
+    @Test
+    public void resumedPauseFinishesWithItsRemainingTime() {
+        resumedRemaining = 3_000;
+        switchTo(MONITORED);
+        scheduler.advance(OverlayStateMachine.SHOW_DELAY);
+        scheduler.advance(3_000 + OverlayStateMachine.FINISH_GRACE);
+        // Long before the app's 10 s delay the overlay is gone, leaving has nothing to dismiss
+        switchTo(OTHER);
+        assertEquals(Arrays.asList("show " + MONITORED), effects);
+        assertFalse(machine.isWatchingForExit());
+    }
+
+    @Test
+    public void disabledAppIsIgnored() {
+        switchTo("com.example.disabled");
+        scheduler.advance(10_000);
+        assertTrue(effects.isEmpty());
+        assertFalse(machine.isWatchingForExit());
+    }
+
+    @Test
+    public void enablingAppTakesEffectAfterInvalidate() {
+        switchTo("com.example.disabled");
+        switchTo(HOME);
+        config.put("com.example.disabled", new MonitoredApp("com.example.disabled", "Off", 5, true));
+        machine.invalidateMonitoredApps();
+        switchTo("com.example.disabled");
+        scheduler.advance(OverlayStateMachine.SHOW_DELAY);
+        assertEquals(Arrays.asList("show com.example.disabled"), effects);
+    }
+
+    @Test
+    public void appOpenedOnlyOnSwitchIntoMonitoredApp() {
+        assertTrue(switchTo(MONITORED).isAppOpened());
+        // Another window of the same app, then our own overlay on top of it
+        scheduler.advance(OverlayStateMachine.SHOW_DELAY);
+        assertFalse(switchTo(MONITORED).isAppOpened());
+        assertFalse(switchTo(OWN).isAppOpened());
+        assertFalse(switchTo(MONITORED).isAppOpened());
+        // Leaving and coming back is a new visit
+        assertFalse(switchTo(OTHER).isAppOpened());
+        assertTrue(switchTo(MONITORED).isAppOpened());
+        assertFalse(switchTo("com.example.disabled").isAppOpened());
+    }
+
+    @Test
+    public void rapidSwitchingNeverShowsOverWrongApp() {
+        String[] packages = {MONITORED, "com.example.social", "com.example.disabled", OTHER, HOME, OWN};
+        Random random = new Random(7);
+        int shows = 0;
+        for (int i = 0; i < 200_000; i++) {
+            switchTo(packages[random.nextInt(packages.length)]);
+            // Mostly faster than the show delay, sometimes long enough to finish a pause
+            scheduler.advance(random.nextInt(10) == 0 ? random.nextInt(15_000) : random.nextInt(400));
+            if (effects.size() > 64) {
+                for (String effect : effects) {
+                    if (effect.startsWith("show ")) {
+                        shows++;
+                    }
+                }
+                effects.clear();
+            }
+        }
+        assertTrue("some overlays should have been shown", shows > 0);
+        switchTo(HOME);
+        scheduler.advance(60_000);
+        assertNull(currentOverlay());
+        assertFalse(machine.isShowPending());
+        assertFalse(machine.isWatchingForExit());
+    }
+
+    /** The overlay on screen, which closes itself once its countdown is done. */
+    private String currentOverlay() {
+        return scheduler.uptimeMillis() < shownUntil ? shownPackage : null;
+    }
+
+    private OverlayDecisionEngine.Decision switchTo(String packageName) {
+        if (!packageName.equals(OWN)) {
+            foreground = packageName;
+        }
+        return machine.onWindowStateChanged(packageName, scheduler.uptimeMillis());
+    }
+}
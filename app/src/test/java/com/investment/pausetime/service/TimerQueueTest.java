@@ -0,0 +1,113 @@
+package com.investment.pausetime.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TimerQueueTest {
+
+    private final List<Long> wakeups = new ArrayList<>();
+    private final List<Integer> ran = new ArrayList<>();
+    private final TimerQueue queue = new TimerQueue(new TimerQueue.Wakeup() {
+        @Override
+        public void wakeAt(long uptimeMillis) {
+            wakeups.add(uptimeMillis);
+        }
+
+        @Override
+        public void cancelWakeup() {
+            wakeups.add(-1L);
+        }
+    });
+
+    @Test
+    public void runsInDeadlineOrderWithOneWakeupAtATime() {
+        TimerQueue.Timer[] timers = timers(3);
+        queue.schedule(timers[0], 300);
+        queue.schedule(timers[1], 100);
+        queue.schedule(timers[2], 200);
+        // Only an earlier deadline moves the wakeup
+        assertEquals(List.of(300L, 100L), wakeups);
+
+        queue.runDue(250);
+        assertEquals(List.of(1, 2), ran);
+        assertEquals(300L, (long) wakeups.get(wakeups.size() - 1));
+
+        queue.runDue(300);
+        assertEquals(List.of(1, 2, 0), ran);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void rescheduleAndCancelMoveTheWakeup() {
+        TimerQueue.Timer[] timers = timers(2);
+        queue.schedule(timers[0], 100);
+        queue.schedule(timers[1], 200);
+        queue.schedule(timers[0], 500);
+        assertEquals(200L, queue.nextDeadline());
+        assertEquals(200L, (long) wakeups.get(wakeups.size() - 1));
+
+        queue.cancel(timers[1]);
+        assertFalse(timers[1].isScheduled());
+        assertEquals(500L, (long) wakeups.get(wakeups.size() - 1));
+
+        queue.cancel(timers[0]);
+        assertEquals(-1L, (long) wakeups.get(wakeups.size() - 1));
+        assertEquals(Long.MAX_VALUE, queue.nextDeadline());
+    }
+
+    @Test
+    public void timerCanRescheduleItselfWhileRunning() {
+        TimerQueue.Timer[] repeating = new TimerQueue.Timer[1];
+        repeating[0] = new TimerQueue.Timer(() -> {
+            ran.add(0);
+            queue.schedule(repeating[0], repeating[0].getDeadline() + 100);
+        });
+        queue.schedule(repeating[0], 100);
+        queue.runDue(100);
+        assertTrue(repeating[0].isScheduled());
+        assertEquals(200L, repeating[0].getDeadline());
+        assertEquals(List.of(100L, 200L), wakeups);
+    }
+
+    @Test
+    public void randomOperationsKeepHeapOrder() {
+        Random random = new Random(7);
+        TimerQueue.Timer[] timers = timers(64);
+        for (int i = 0; i < 10_000; i++) {
+            TimerQueue.Timer timer = timers[random.nextInt(timers.length)];
+            if (random.nextInt(4) == 0) {
+                queue.cancel(timer);
+            } else {
+                queue.schedule(timer, random.nextInt(1_000));
+            }
+        }
+        long last = Long.MIN_VALUE;
+        while (queue.size() > 0) {
+            long deadline = queue.nextDeadline();
+            assertTrue(deadline >= last);
+            int before = queue.size();
+            queue.runDue(deadline);
+            assertTrue(queue.size() < before);
+            last = deadline;
+        }
+        for (TimerQueue.Timer timer : timers) {
+            assertFalse(timer.isScheduled());
+        }
+    }
+
+    private TimerQueue.Timer[] timers(int count) {
+        TimerQueue.Timer[] timers = new TimerQueue.Timer[count];
+        for (int i = 0; i < count; i++) {
+            int id = i;
+            timers[i] = new TimerQueue.Timer(() -> ran.add(id));
+        }
+        return timers;
+    }
+}
@@ -0,0 +1,124 @@
+package com.investment.pausetime.service;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class UsageLogTest {
+
+    private static final String VIDEO = "com.example.video";
+    private static final String SOCIAL = "com.example.social";
+    private static final String NEWS = "com.example.news";
+    private static final long MINUTE = 60_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long now = 1_700_000_000_000L;
+
+    @Test
+    public void summaryCountsPausesThatEndedInGivingUp() {
+        UsageLog log = newLog();
+        // Left the pause but came back a minute later
+        pause(log, VIDEO, false);
+        now += MINUTE;
+        pause(log, VIDEO, true);
+        // Left and did not come back
+        pause(log, SOCIAL, false);
+        now += 60 * MINUTE;
+        // Left just now, not decided yet
+        pause(log, NEWS, false);
+        now += MINUTE;
+
+        UsageLog.Summary summary = log.summarize(0, 10 * MINUTE);
+        assertEquals(4, summary.appOpens);
+        assertEquals(4, summary.pausesShown);
+        assertEquals(1, summary.pausesCompleted);
+        assertEquals(3, summary.pausesAbandoned);
+        assertEquals(1, summary.gaveUp);
+
+        UsageLog.Summary recent = log.summarize(now - 2 * MINUTE, 10 * MINUTE);
+        assertEquals(1, recent.appOpens);
+        assertEquals(0, recent.gaveUp);
+    }
+
+    @Test
+    public void rotatesSegmentsAndContinuesAfterReopening() {
+        File directory = new File(folder.getRoot(), UsageLog.DIR_NAME);
+        UsageLog log = new UsageLog(directory, () -> now);
+        int perSegment = UsageLog.SEGMENT_RECORDS - 1;
+        int written = perSegment * (UsageLog.MAX_SEGMENTS + 1) + 10;
+        for (int i = 0; i < written; i++) {
+            log.append(UsageLog.TYPE_APP_OPENED, i % 2 == 0 ? VIDEO : SOCIAL, i);
+            now++;
+            if (i % UsageLog.PENDING_CAPACITY == 0) {
+                // Far faster than the app ever writes, let the log thread map the next segment
+                log.awaitIdle();
+            }
+        }
+
+        // A new process picks up the same package IDs and the first free slot
+        UsageLog reopened = new UsageLog(directory, () -> now);
+        reopened.append(UsageLog.TYPE_APP_OPENED, new StringBuilder(NEWS), written);
+        reopened.awaitIdle();
+
+        // Plus the empty one mapped ahead
+        String[] segments = directory.list((dir, name) -> name.endsWith(".seg"));
+        assertEquals(UsageLog.MAX_SEGMENTS + 1, segments.length);
+        long[] count = new long[1];
+        long[] last = {-1};
+        Set<String> packages = new TreeSet<>();
+        reopened.scan(0, (time, type, packageId, value) -> {
+            if (last[0] >= 0) {
+                assertEquals(last[0] + 1, value);
+            }
+            last[0] = value;
+            count[0]++;
+            packages.add(reopened.getPackageName(packageId));
+        });
+        // The oldest segments were deleted, everything after them is still in order
+        assertEquals(perSegment * (UsageLog.MAX_SEGMENTS - 1) + 10 + 1, count[0]);
+        assertEquals(written, last[0]);
+        assertEquals(new TreeSet<>(Arrays.asList(VIDEO, SOCIAL, NEWS)), packages);
+    }
+
+    @Test
+    public void idsWrittenWithoutTheirNameAreNotReused() {
+        File directory = new File(folder.getRoot(), UsageLog.DIR_NAME);
+        UsageLog log = new UsageLog(directory, () -> now);
+        log.append(UsageLog.TYPE_APP_OPENED, VIDEO, 0);
+        log.append(UsageLog.TYPE_APP_OPENED, SOCIAL, 0);
+        log.awaitIdle();
+        // As if the process died before the names reached the file
+        new File(directory, UsageLog.PACKAGES_FILE_NAME).delete();
+
+        UsageLog reopened = new UsageLog(directory, () -> now);
+        reopened.append(UsageLog.TYPE_APP_OPENED, NEWS, 0);
+        Set<String> packages = new TreeSet<>();
+        reopened.scan(0, (time, type, packageId, value) -> packages.add(reopened.getPackageName(packageId)));
+        assertEquals(new TreeSet<>(Arrays.asList("?", NEWS)), packages);
+    }
+
+    private UsageLog newLog() {
+        return new UsageLog(new File(folder.getRoot(), UsageLog.DIR_NAME), () -> now);
+    }
+
+    private void pause(UsageLog log, String packageName, boolean complete) {
+        log.append(UsageLog.TYPE_APP_OPENED, packageName, 0);
+        log.append(UsageLog.TYPE_PAUSE_SHOWN, packageName, 30_000);
+        now += 5_000;
+        if (complete) {
+            now += 25_000;
+            log.append(UsageLog.TYPE_PAUSE_COMPLETED, packageName, 30_000);
+        } else {
+            log.append(UsageLog.TYPE_PAUSE_ABANDONED, packageName, 5_000);
+        }
+    }
+}
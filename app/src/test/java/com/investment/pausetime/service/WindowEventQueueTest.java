@@ -0,0 +1,51 @@
+package com.investment.pausetime.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WindowEventQueueTest {
+
+    private final WindowEventQueue queue = new WindowEventQueue(3);
+    private final WindowEventQueue.Event event = new WindowEventQueue.Event();
+
+    @Test
+    public void repeatedPackageMovesToTailWithNewerTime() {
+        assertTrue(queue.offer("a", null, 1, 10));
+        assertFalse(queue.offer("b", null, 2, 20));
+        assertFalse(queue.offer(new StringBuilder("a"), "Main", 3, 30));
+
+        assertPolled("b", 20);
+        assertTrue(queue.poll(event));
+        assertEquals("a", event.packageName.toString());
+        assertEquals("Main", event.className);
+        assertEquals(3, event.windowId);
+        assertEquals(30, event.eventTime);
+        assertFalse(queue.poll(event));
+        assertEquals(1, queue.getCoalescedCount());
+    }
+
+    @Test
+    public void fullQueueDropsOldestPackage() {
+        queue.offer("a", null, 0, 10);
+        queue.offer("b", null, 0, 20);
+        queue.offer("c", null, 0, 30);
+        queue.offer("d", null, 0, 40);
+
+        assertPolled("b", 20);
+        assertPolled("c", 30);
+        assertPolled("d", 40);
+        assertFalse(queue.poll(event));
+        assertEquals(1, queue.getDroppedCount());
+        // Empty again, the next offer has to schedule a drain
+        assertTrue(queue.offer("a", null, 0, 50));
+    }
+
+    private void assertPolled(String packageName, long eventTime) {
+        assertTrue(queue.poll(event));
+        assertEquals(packageName, event.packageName.toString());
+        assertEquals(eventTime, event.eventTime);
+    }
+}
@@ -0,0 +1,56 @@
+package com.investment.pausetime.service;
+
+/**
+ * Clock and timer wakeup for {@link OverlayStateMachine} on the JVM. Advancing
+ * virtual time runs the {@link TimerQueue} whenever its wakeup is due, so
+ * hours of app switching replay in moments. A test fixture of the app, also
+ * compiled into the benchmark module for its simulator and trace replay.
+ */
+class VirtualScheduler implements OverlayStateMachine.Clock, TimerQueue.Wakeup {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    final TimerQueue queue = new TimerQueue(this);
+    private long now;
+    private long wakeAt = NONE;
+    private long wakeups;
+
+    VirtualScheduler(long start) {
+        this.now = start;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void wakeAt(long uptimeMillis) {
+        wakeAt = uptimeMillis;
+    }
+
+    @Override
+    public void cancelWakeup() {
+        wakeAt = NONE;
+    }
+
+    /** Number of times the timer queue was woken up to run due timers. */
+    long getWakeups() {
+        return wakeups;
+    }
+
+    void advance(long millis) {
+        advanceTo(now + millis);
+    }
+
+    /** Runs every timer due up to {@code time}, which becomes the current time. */
+    void advanceTo(long time) {
+        while (wakeAt != NONE && wakeAt <= time) {
+            now = Math.max(now, wakeAt);
+            wakeAt = NONE;
+            wakeups++;
+            queue.runDue(now);
+        }
+        now = Math.max(now, time);
+    }
+}
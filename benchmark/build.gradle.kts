@@ -0,0 +1,84 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// An application module cannot be depended on, so compile the Android-free
+// classes under test straight from the app sources. Anything listed here must
+// only touch android.* types that exist in the stub jar below, and never call
+// into them on the benchmarked paths.
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/investment/pausetime/model/MonitoredApp.java",
+                "com/investment/pausetime/repository/AppRepository.java",
+                "com/investment/pausetime/repository/MonitoredAppChange.java",
+                "com/investment/pausetime/repository/MonitoredAppStore.java",
+                "com/investment/pausetime/repository/RecordFile.java",
+                "com/investment/pausetime/service/EventTrace.java",
+                "com/investment/pausetime/service/OverlayDecisionEngine.java",
+                "com/investment/pausetime/service/OverlayStateMachine.java",
+                "com/investment/pausetime/service/PackageIds.java",
+                "com/investment/pausetime/service/TimerQueue.java"
+            )
+        }
+    }
+}
+
+// The app's test fixtures, so the simulator and trace replay run on the same
+// virtual clock as the unit tests. Kept out of main, only the jmh sources see them.
+val testFixtures by sourceSets.creating {
+    java {
+        setSrcDirs(listOf("../app/src/testFixtures/java"))
+    }
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+sourceSets.named("jmh") {
+    compileClasspath += testFixtures.output
+    runtimeClasspath += testFixtures.output
+}
+
+dependencies {
+    implementation(libs.gson)
+    // SharedPreferences / Context interfaces only, the benchmarks stub them in memory
+    implementation(libs.android.stubs) {
+        isTransitive = false
+    }
+}
+
+// Long replay of synthetic app switches, see OverlaySimulator
+tasks.register<JavaExec>("simulateOverlays") {
+    group = "verification"
+    description = "Replays synthetic app switches through the overlay state machine."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.investment.pausetime.service.OverlaySimulator")
+}
+
+// Replay of traces recorded on a device, see TraceReplay
+tasks.register<JavaExec>("replayTrace") {
+    group = "verification"
+    description = "Replays recorded accessibility event traces through the overlay state machine."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.investment.pausetime.service.TraceReplay")
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    benchmarkMode.set(listOf("thrpt", "avgt"))
+    timeUnit.set("us")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // Reports gc.alloc.rate and gc.alloc.rate.norm (bytes per operation)
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,133 @@
+package com.investment.pausetime.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.investment.pausetime.model.MonitoredApp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serialization and lookup costs of {@link AppRepository} for synthetic
+ * configurations of increasing size.
+ */
+@State(Scope.Thread)
+public class AppRepositoryBenchmark {
+
+    private static final Type LIST_TYPE = new TypeToken<ArrayList<MonitoredApp>>(){}.getType();
+
+    @Param({"10", "100", "500", "5000"})
+    public int size;
+
+    private File dir;
+    private File storeFile;
+    private InMemorySharedPreferences prefs;
+    private AppRepository repository;
+    private List<MonitoredApp> apps;
+    private byte[] encoded;
+    private String json;
+    private final Gson gson = new Gson();
+    private String[] lookupKeys;
+    private int lookupIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("repo-bench").toFile();
+        storeFile = new File(dir, "monitored_apps.bin");
+        prefs = new InMemorySharedPreferences();
+        apps = syntheticApps(size);
+        repository = new AppRepository(prefs, storeFile);
+        repository.saveMonitoredApps(apps);
+        // coldLoad reads the store file, make sure it is written
+        repository.awaitSaved();
+        encoded = MonitoredAppStore.encode(apps);
+        json = gson.toJson(apps);
+
+        // Half hits, half misses, like app switches between monitored and other apps
+        lookupKeys = new String[1024];
+        for (int i = 0; i < lookupKeys.length; i++) {
+            lookupKeys[i] = (i & 1) == 0
+                    ? apps.get(i % size).getPackageName()
+                    : "com.other.app" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.awaitSaved();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public MonitoredApp lookup() {
+        String key = lookupKeys[lookupIndex++ & (lookupKeys.length - 1)];
+        return repository.getMonitoredApp(key);
+    }
+
+    @Benchmark
+    public List<MonitoredApp> coldLoad() {
+        // A fresh instance has no snapshot, so this measures a full read from disk
+        return new AppRepository(prefs, storeFile).getMonitoredApps();
+    }
+
+    /** Publishing a new snapshot; the write itself happens on the save thread. */
+    @Benchmark
+    public void save() {
+        repository.saveMonitoredApps(apps);
+    }
+
+    @Benchmark
+    public void updateDelay() {
+        // One edit through a transaction, as the delay picker does
+        String key = apps.get(lookupIndex++ % size).getPackageName();
+        int delay = 1 + (lookupIndex % 300);
+        repository.update(tx -> tx.setDelaySeconds(key, delay));
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() throws IOException {
+        return MonitoredAppStore.encode(apps);
+    }
+
+    @Benchmark
+    public List<MonitoredApp> binaryDecode() throws IOException {
+        return MonitoredAppStore.decode(encoded);
+    }
+
+    @Benchmark
+    public String gsonEncode() {
+        return gson.toJson(apps);
+    }
+
+    @Benchmark
+    public List<MonitoredApp> gsonDecode() {
+        return gson.fromJson(json, LIST_TYPE);
+    }
+
+    static List<MonitoredApp> syntheticApps(int count) {
+        List<MonitoredApp> apps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            apps.add(new MonitoredApp("com.example.app" + i, "Example App " + i,
+                    1 + (i % 300), i % 7 != 0));
+        }
+        return apps;
+    }
+}
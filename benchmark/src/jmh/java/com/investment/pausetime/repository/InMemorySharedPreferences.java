@@ -0,0 +1,159 @@
+package com.investment.pausetime.repository;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Map backed {@link SharedPreferences} for running repository code on a plain
+ * JVM. Listeners are held weakly and notified synchronously on apply/commit.
+ */
+class InMemorySharedPreferences implements SharedPreferences {
+
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<OnSharedPreferenceChangeListener, Boolean> listeners = new WeakHashMap<>();
+
+    @Override
+    public Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        Object v = values.get(key);
+        return v != null ? (String) v : defValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        Object v = values.get(key);
+        return v != null ? (Set<String>) v : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object v = values.get(key);
+        return v != null ? (Integer) v : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object v = values.get(key);
+        return v != null ? (Long) v : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object v = values.get(key);
+        return v != null ? (Float) v : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object v = values.get(key);
+        return v != null ? (Boolean) v : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new InMemoryEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.put(listener, Boolean.TRUE);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private final class InMemoryEditor implements Editor {
+        private final Map<String, Object> pending = new HashMap<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, String value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            pending.put(key, values);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            pending.put(key, null);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            if (clear) {
+                values.clear();
+            }
+            for (Map.Entry<String, Object> entry : pending.entrySet()) {
+                if (entry.getValue() == null) {
+                    values.remove(entry.getKey());
+                } else {
+                    values.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (OnSharedPreferenceChangeListener listener : listeners.keySet().toArray(
+                    new OnSharedPreferenceChangeListener[0])) {
+                for (String key : pending.keySet()) {
+                    listener.onSharedPreferenceChanged(InMemorySharedPreferences.this, key);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void apply() {
+            commit();
+        }
+    }
+}
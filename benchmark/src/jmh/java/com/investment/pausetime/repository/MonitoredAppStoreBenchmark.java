@@ -0,0 +1,95 @@
+package com.investment.pausetime.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.investment.pausetime.model.MonitoredApp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cold load and save of {@link MonitoredAppStore} against the previous Gson
+ * path. Both saves do the same durability work: write a temp file, sync it
+ * and rename it over the previous one. The Gson side writes the JSON string
+ * to a plain file, so it underestimates the SharedPreferences XML cost it
+ * replaces.
+ */
+@State(Scope.Thread)
+public class MonitoredAppStoreBenchmark {
+
+    private static final Type LIST_TYPE = new TypeToken<ArrayList<MonitoredApp>>(){}.getType();
+
+    @Param({"10", "500", "5000"})
+    public int size;
+
+    private final Gson gson = new Gson();
+    private File dir;
+    private MonitoredAppStore store;
+    private File jsonFile;
+    private File jsonTempFile;
+    private List<MonitoredApp> apps;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("store-bench").toFile();
+        store = new MonitoredAppStore(new File(dir, "monitored_apps.bin"));
+        jsonFile = new File(dir, "monitored_apps.json");
+        jsonTempFile = new File(dir, "monitored_apps.json.tmp");
+        apps = AppRepositoryBenchmark.syntheticApps(size);
+        store.save(apps);
+        gsonSave();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public void binarySave() throws IOException {
+        store.save(apps);
+    }
+
+    @Benchmark
+    public List<MonitoredApp> binaryLoad() throws IOException {
+        return store.load();
+    }
+
+    @Benchmark
+    public void gsonSave() throws IOException {
+        byte[] bytes = gson.toJson(apps).getBytes(StandardCharsets.UTF_8);
+        try (FileOutputStream out = new FileOutputStream(jsonTempFile)) {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        if (!jsonTempFile.renameTo(jsonFile)) {
+            throw new IOException("Could not replace " + jsonFile);
+        }
+    }
+
+    @Benchmark
+    public List<MonitoredApp> gsonLoad() throws IOException {
+        String json = new String(Files.readAllBytes(jsonFile.toPath()), StandardCharsets.UTF_8);
+        return gson.fromJson(json, LIST_TYPE);
+    }
+}
@@ -0,0 +1,70 @@
+package com.investment.pausetime.service;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Cost of one window-state event through {@link OverlayDecisionEngine}, the
+ * work {@link AppMonitoringService} does on every app switch. The timer
+ * callbacks the service would post are run inline so the engine keeps cycling
+ * through pending, active and cooldown states.
+ */
+@State(Scope.Thread)
+public class OverlayDecisionBenchmark {
+
+    private static final int SEQUENCE_LENGTH = 4096;
+    private static final String LAUNCHER = "com.google.android.apps.nexuslauncher";
+
+    @Param({"10", "100", "500", "5000"})
+    public int monitoredApps;
+
+    private OverlayDecisionEngine engine;
+    private String[] sequence;
+    private int index;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        Map<String, MonitoredApp> config = new HashMap<>();
+        for (int i = 0; i < monitoredApps; i++) {
+            String packageName = "com.example.app" + i;
+            config.put(packageName, new MonitoredApp(packageName, "Example App " + i, 45, true));
+        }
+        engine = new OverlayDecisionEngine("com.investment.pausetime", config::get);
+
+        // Mix of monitored apps, unmonitored apps and trips back to the launcher
+        Random random = new Random(42);
+        sequence = new String[SEQUENCE_LENGTH];
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            int pick = random.nextInt(10);
+            if (pick < 3) {
+                sequence[i] = LAUNCHER;
+            } else if (pick < 7) {
+                sequence[i] = "com.example.app" + random.nextInt(monitoredApps);
+            } else {
+                sequence[i] = "com.other.app" + random.nextInt(200);
+            }
+        }
+    }
+
+    @Benchmark
+    public OverlayDecisionEngine.Decision onWindowStateChanged() {
+        String packageName = sequence[index++ & (SEQUENCE_LENGTH - 1)];
+        now += 700;
+        OverlayDecisionEngine.Decision decision = engine.onWindowStateChanged(packageName, now);
+        MonitoredApp scheduled = decision.getScheduledApp();
+        if (scheduled != null && engine.onShowDue(decision.getPackageId(), now)) {
+            engine.onOverlayFinished(decision.getPackageId());
+        }
+        return decision;
+    }
+}
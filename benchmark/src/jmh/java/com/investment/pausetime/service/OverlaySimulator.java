@@ -0,0 +1,152 @@
+package com.investment.pausetime.service;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays synthetic app-switch sequences through {@link OverlayStateMachine}
+ * on a virtual clock and reports decision throughput, bytes allocated per
+ * event and any broken invariant: an overlay shown over an app the user is no
+ * longer in, two overlays at once, or state left behind once the user settles
+ * on the home screen.
+ *
+ * Run with: ./gradlew :benchmark:simulateOverlays [--args="events monitoredApps seed"]
+ */
+public final class OverlaySimulator {
+
+    private static final String OWN = "com.investment.pausetime";
+    private static final String HOME = "com.example.home";
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+
+    private final VirtualScheduler scheduler = new VirtualScheduler(1_000_000);
+    private final OverlayStateMachine machine;
+    private final String[] sequence;
+    private final long[] gaps;
+    private String foreground = HOME;
+    private String shownPackage;
+    private long shownUntil;
+    private long shows;
+    private long dismissals;
+    private long drops;
+    private long violations;
+
+    OverlaySimulator(int monitoredApps, long seed) {
+        Map<String, MonitoredApp> config = new HashMap<>();
+        for (int i = 0; i < monitoredApps; i++) {
+            String packageName = "com.example.app" + i;
+            config.put(packageName, new MonitoredApp(packageName, "Example App " + i,
+                    1 + (i % 60), i % 7 != 0));
+        }
+        machine = new OverlayStateMachine(new OverlayDecisionEngine(OWN, config::get),
+                scheduler, scheduler.queue, new OverlayStateMachine.Listener() {
+                    @Override
+                    public long onShowOverlay(MonitoredApp app, long eventTime, long decisionTime) {
+                        shows++;
+                        if (!app.getPackageName().equals(foreground) || currentOverlay() != null) {
+                            violations++;
+                        }
+                        shownPackage = app.getPackageName();
+                        shownUntil = scheduler.uptimeMillis() + app.getDelaySeconds() * 1000L;
+                        return app.getDelaySeconds() * 1000L;
+                    }
+
+                    @Override
+                    public void onDismissOverlay(String packageName) {
+                        dismissals++;
+                        shownPackage = null;
+                    }
+
+                    @Override
+                    public void onShowDropped(String packageName, long eventTime) {
+                        drops++;
+                    }
+
+                    @Override
+                    public void onStateChanged() {
+                    }
+                });
+
+        // Mostly switches faster than the show delay, with occasional long stays
+        Random random = new Random(seed);
+        sequence = new String[SEQUENCE_LENGTH];
+        gaps = new long[SEQUENCE_LENGTH];
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            int pick = random.nextInt(20);
+            if (pick < 5) {
+                sequence[i] = HOME;
+            } else if (pick < 12) {
+                sequence[i] = "com.example.app" + random.nextInt(monitoredApps);
+            } else if (pick < 13) {
+                sequence[i] = OWN;
+            } else {
+                sequence[i] = "com.other.app" + random.nextInt(200);
+            }
+            gaps[i] = random.nextInt(10) == 0 ? random.nextInt(20_000) : random.nextInt(600);
+        }
+    }
+
+    /** Feeds {@code events} switches. */
+    void run(long events) {
+        for (long i = 0; i < events; i++) {
+            int index = (int) (i & (SEQUENCE_LENGTH - 1));
+            String packageName = sequence[index];
+            if (!packageName.equals(OWN)) {
+                // The engine ignores our own windows, so they don't move the user
+                foreground = packageName;
+            }
+            machine.onWindowStateChanged(packageName, scheduler.uptimeMillis());
+            scheduler.advance(gaps[index]);
+        }
+    }
+
+    /** Goes home and lets every timer run, after which nothing may be left. */
+    void settle() {
+        foreground = HOME;
+        machine.onWindowStateChanged(HOME, scheduler.uptimeMillis());
+        scheduler.advance(120_000);
+        if (currentOverlay() != null || machine.isShowPending() || machine.isWatchingForExit()
+                || scheduler.queue.size() != 0) {
+            violations++;
+        }
+    }
+
+    private String currentOverlay() {
+        // The overlay closes itself once its countdown is done
+        return scheduler.uptimeMillis() < shownUntil ? shownPackage : null;
+    }
+
+    public static void main(String[] args) {
+        long events = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000;
+        int monitoredApps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        // Warm up the JIT so the measured run is steady state
+        OverlaySimulator warmup = new OverlaySimulator(monitoredApps, seed + 1);
+        warmup.run(Math.min(events, 1_000_000));
+
+        OverlaySimulator simulator = new OverlaySimulator(monitoredApps, seed);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        simulator.run(events);
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        simulator.settle();
+
+        System.out.println(String.format("%,d events, %d monitored apps, seed %d", events, monitoredApps, seed));
+        System.out.println(String.format("%,.0f events/s, %.1f ns/event, %.2f bytes/event",
+                events * 1e9 / elapsed, (double) elapsed / events, (double) allocated / events));
+        System.out.println(String.format("%,d shown, %,d dismissed, %,d dropped, %,d wakeups",
+                simulator.shows, simulator.dismissals, simulator.drops, simulator.scheduler.getWakeups()));
+        System.out.println(simulator.violations + " invariant violations");
+        if (simulator.violations != 0) {
+            System.exit(1);
+        }
+    }
+}
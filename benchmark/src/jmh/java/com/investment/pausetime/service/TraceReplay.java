@@ -0,0 +1,199 @@
+package com.investment.pausetime.service;
+
+import com.investment.pausetime.model.MonitoredApp;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays traces recorded by {@link EventTraceRecorder} through
+ * {@link OverlayStateMachine} at virtual time. Prints every decision that
+ * differs from the recorded one, how often each decision was taken and the
+ * processing cost per event over repeated rounds.
+ *
+ * Run with: ./gradlew :benchmark:replayTrace --args="[--rounds N] events.trace.1 events.trace"
+ * Pass the files oldest first. Exits with 1 if any decision differs.
+ */
+public final class TraceReplay {
+
+    private static final String OWN = "com.investment.pausetime";
+    private static final int MAX_PRINTED_MISMATCHES = 20;
+
+    /** One record of the trace, kept in memory so I/O stays out of the timings. */
+    private static final class Record {
+        int kind;
+        String packageName;
+        String className;
+        int windowId;
+        int delaySeconds;
+        boolean enabled;
+        long eventTime;
+        OverlayDecisionEngine.Reason reason;
+        boolean dismissed;
+        boolean cancelled;
+    }
+
+    private static final OverlayStateMachine.Listener IGNORE = new OverlayStateMachine.Listener() {
+        @Override
+        public long onShowOverlay(MonitoredApp app, long eventTime, long decisionTime) {
+            return app.getDelaySeconds() * 1000L;
+        }
+
+        @Override
+        public void onDismissOverlay(String packageName) {
+        }
+
+        @Override
+        public void onShowDropped(String packageName, long eventTime) {
+        }
+
+        @Override
+        public void onStateChanged() {
+        }
+    };
+
+    public static void main(String[] args) throws IOException {
+        int rounds = 200;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--rounds")) {
+                rounds = Integer.parseInt(args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: TraceReplay [--rounds N] trace-file...");
+            System.exit(2);
+        }
+
+        List<Record> records = new ArrayList<>();
+        for (String file : files) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                read(in, records);
+            }
+        }
+
+        // First round checks the decisions, the rest only measure
+        long[] costs = new long[countEvents(records)];
+        int mismatches = replay(records, costs, true);
+        long[] best = costs.clone();
+        for (int round = 1; round < rounds; round++) {
+            replay(records, costs, false);
+            for (int i = 0; i < costs.length; i++) {
+                best[i] = Math.min(best[i], costs[i]);
+            }
+        }
+        report(records, best, rounds);
+        System.out.println(mismatches + " decisions differ from the recording");
+        if (mismatches != 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void read(InputStream in, List<Record> records) throws IOException {
+        EventTrace.Reader reader = new EventTrace.Reader(in);
+        while (reader.next()) {
+            Record record = new Record();
+            record.kind = reader.kind;
+            record.packageName = reader.packageName;
+            record.delaySeconds = reader.delaySeconds;
+            record.enabled = reader.enabled;
+            record.eventTime = reader.eventTime;
+            record.className = reader.className;
+            record.windowId = reader.windowId;
+            record.reason = reader.reason;
+            record.dismissed = reader.dismissed;
+            record.cancelled = reader.cancelled;
+            records.add(record);
+        }
+    }
+
+    /** Replays all records on a fresh state machine, filling in the nanoseconds per event. */
+    private static int replay(List<Record> records, long[] costs, boolean check) {
+        Map<String, MonitoredApp> config = new HashMap<>();
+        VirtualScheduler scheduler = new VirtualScheduler(0);
+        OverlayStateMachine machine = new OverlayStateMachine(
+                new OverlayDecisionEngine(OWN, config::get), scheduler, scheduler.queue, IGNORE);
+        int mismatches = 0;
+        int event = 0;
+        for (Record record : records) {
+            if (record.kind == EventTrace.KIND_APP) {
+                config.put(record.packageName, new MonitoredApp(record.packageName,
+                        record.packageName, record.delaySeconds, record.enabled));
+                machine.invalidateMonitoredApps();
+                continue;
+            }
+            scheduler.advanceTo(record.eventTime);
+            long start = System.nanoTime();
+            OverlayDecisionEngine.Decision decision =
+                    machine.onWindowStateChanged(record.packageName, record.eventTime);
+            costs[event] = System.nanoTime() - start;
+            if (check && (decision.getReason() != record.reason
+                    || (decision.getDismissPackage() != null) != record.dismissed
+                    || (decision.getCancelPackage() != null) != record.cancelled)) {
+                if (mismatches++ < MAX_PRINTED_MISMATCHES) {
+                    System.out.println(String.format("#%d %d %s %s window %d: recorded %s, replayed %s",
+                            event, record.eventTime, record.packageName, record.className,
+                            record.windowId, describe(record.reason, record.dismissed, record.cancelled),
+                            describe(decision.getReason(), decision.getDismissPackage() != null,
+                                    decision.getCancelPackage() != null)));
+                }
+            }
+            event++;
+        }
+        return mismatches;
+    }
+
+    private static void report(List<Record> records, long[] best, int rounds) {
+        Map<OverlayDecisionEngine.Reason, Integer> reasons = new EnumMap<>(OverlayDecisionEngine.Reason.class);
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (Record record : records) {
+            if (record.kind == EventTrace.KIND_EVENT) {
+                reasons.merge(record.reason, 1, Integer::sum);
+                first = Math.min(first, record.eventTime);
+                last = Math.max(last, record.eventTime);
+            }
+        }
+        System.out.println(String.format("%,d events over %.1f minutes", best.length,
+                best.length == 0 ? 0.0 : (last - first) / 60_000.0));
+        for (Map.Entry<OverlayDecisionEngine.Reason, Integer> entry : reasons.entrySet()) {
+            System.out.println(String.format("  %-16s %,d", entry.getKey(), entry.getValue()));
+        }
+        if (best.length == 0) {
+            return;
+        }
+        long[] sorted = best.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long cost : sorted) {
+            total += cost;
+        }
+        System.out.println(String.format("Per event, best of %d rounds: mean %d ns, p50 %d ns, p99 %d ns, max %d ns",
+                rounds, total / sorted.length, sorted[sorted.length / 2],
+                sorted[Math.min(sorted.length - 1, sorted.length * 99 / 100)], sorted[sorted.length - 1]));
+    }
+
+    private static int countEvents(List<Record> records) {
+        int count = 0;
+        for (Record record : records) {
+            if (record.kind == EventTrace.KIND_EVENT) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String describe(OverlayDecisionEngine.Reason reason, boolean dismissed, boolean cancelled) {
+        return reason + (dismissed ? "+dismiss" : "") + (cancelled ? "+cancel" : "");
+    }
+}